@@ -3,22 +3,36 @@ package org.jetbrains.research.refactorinsight.actions;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.DataContext;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiMethod;
 import com.intellij.usages.PsiElementUsageTarget;
 import com.intellij.usages.UsageTarget;
 import com.intellij.usages.UsageView;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import git4idea.repo.GitRepository;
 import git4idea.repo.GitRepositoryManager;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.refactorinsight.data.MethodHistory;
 import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
 import org.jetbrains.research.refactorinsight.services.MiningService;
 import org.jetbrains.research.refactorinsight.ui.windows.HistoryType;
@@ -34,10 +48,16 @@ import org.jetbrains.research.refactorinsight.utils.Utils;
  * It checks if the selected PsiElement is instances of Class, Method or Field.
  * It computes the last object's signature and retrieves the data from the
  * refactoring history map.
+ * Older commits past the history boundary are then mined in the background
+ * and the toolbar is updated once they add to the history of the element.
+ * For a class, only the commits that touched its file are mined, following renames.
  */
 public class RefactoringHistoryAction extends AnAction {
+  private static final Logger LOG = Logger.getInstance(RefactoringHistoryAction.class);
+  private static final int DEEP_CHUNK = 100;
+  private static final int DEEP_CHUNKS = 5;
 
-  Map<String, Set<RefactoringInfo>> map;
+  MethodHistory map;
   RefactoringHistoryToolbar refactoringHistoryToolbar;
 
   @Override
@@ -49,11 +69,17 @@ public class RefactoringHistoryAction extends AnAction {
     if (GitRepositoryManager.getInstance(project).getRepositories().isEmpty()) {
       return;
     }
+    long start = System.nanoTime();
     map = e.getProject().getService(MiningService.class).getRefactoringHistory();
 
     DataContext dataContext = e.getDataContext();
     UsageTarget[] usageTarget = dataContext.getData(UsageView.USAGE_TARGETS_KEY);
-    showHistory(project, dataContext, usageTarget);
+    showHistory(project, dataContext, usageTarget, start);
+  }
+
+  private static void logShown(long start) {
+    LOG.info(String.format("Check Refactoring History took %d ms",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
   }
 
   /**
@@ -62,22 +88,25 @@ public class RefactoringHistoryAction extends AnAction {
    * @param project     the currently opened project
    * @param dataContext context in editor
    * @param usageTarget the target of the action call
+   * @param start       when the action was called, in nanoseconds
    */
   private void showHistory(Project project, DataContext dataContext,
-                           UsageTarget[] usageTarget) {
+                           UsageTarget[] usageTarget, long start) {
     if (usageTarget != null) {
       UsageTarget target = usageTarget[0];
       if (target instanceof PsiElementUsageTarget) {
         if (((PsiElementUsageTarget) target).getElement() instanceof PsiMethod) {
           PsiMethod method = (PsiMethod) ((PsiElementUsageTarget) target).getElement();
           showHistoryMethod(project, dataContext, method);
+          logShown(start);
 
         } else if (((PsiElementUsageTarget) target).getElement() instanceof PsiClass) {
           PsiClass psiClass = (PsiClass) ((PsiElementUsageTarget) target).getElement();
 
-          showHistoryClass(project, dataContext, psiClass);
+          showHistoryClass(project, dataContext, psiClass, start);
         } else if (((PsiElementUsageTarget) target).getElement() instanceof PsiField) {
           showHistoryAttribute(project, dataContext, (PsiElementUsageTarget) target);
+          logShown(start);
         }
       }
     }
@@ -87,38 +116,162 @@ public class RefactoringHistoryAction extends AnAction {
                                     PsiElementUsageTarget target) {
     PsiField field = (PsiField) target.getElement();
     String signature = StringUtils.getFieldSignature(field);
-    getToolbarWindow(project)
+    String name = field.getName();
+    showAndMineDeeper(project, signature, () -> getToolbarWindow(project)
         .showToolbar(map.getOrDefault(signature, new HashSet<>()),
-            field.getName(), dataContext, HistoryType.ATTRIBUTE, null, null);
+            name, dataContext, HistoryType.ATTRIBUTE, null, null));
   }
 
-  private void showHistoryClass(Project project, DataContext dataContext, PsiClass psiClass) {
-    String signature = psiClass.getQualifiedName();
-    List<String> methods = Arrays.asList(psiClass.getMethods()).stream()
-        .map(method -> StringUtils.calculateSignature(method)).collect(Collectors.toList());
-    HashMap<String, Set<RefactoringInfo>> methodsHistory = new HashMap<>();
-    methods.forEach(method -> {
-      methodsHistory.put(method, map.getOrDefault(method, new HashSet<>()));
-    });
+  private void showHistoryClass(Project project, DataContext dataContext, PsiClass psiClass,
+                                long start) {
+    GitRepository repository = GitRepositoryManager.getInstance(project).getRepositories().get(0);
+    ReadAction.nonBlocking(() -> new ClassSignatures(psiClass, repository))
+        .expireWith(project)
+        .finishOnUiThread(ModalityState.defaultModalityState(),
+            signatures -> showHistoryClass(project, dataContext, repository, signatures, start))
+        .submit(AppExecutorUtil.getAppExecutorService());
+  }
 
-    List<String> fields = Arrays.asList(psiClass.getFields()).stream()
-        .map(field -> StringUtils.getFieldSignature(field)).collect(Collectors.toList());
-    HashMap<String, Set<RefactoringInfo>> fieldsHistory = new HashMap<>();
-    fields.forEach(field -> {
-      fieldsHistory.put(field, map.getOrDefault(field, new HashSet<>()));
-    });
+  private void showHistoryClass(Project project, DataContext dataContext,
+                                GitRepository repository, ClassSignatures signatures,
+                                long start) {
+    Consumer<MethodHistory> render = history -> {
+      Map<String, Set<RefactoringInfo>> classHistory =
+          history.getClassHistory(signatures.signature);
+      //keys owned by another class than their signature suggests are looked up directly
+      Function<String, Set<RefactoringInfo>> lookup = key -> classHistory.containsKey(key)
+          ? classHistory.get(key) : history.getOrDefault(key, new HashSet<>());
+      HashMap<String, Set<RefactoringInfo>> methodsHistory = new HashMap<>();
+      signatures.methods.forEach(method -> {
+        methodsHistory.put(method, lookup.apply(method));
+      });
 
-    getToolbarWindow(project)
-        .showToolbar(map.getOrDefault(signature, new HashSet<>()),
-            psiClass.getName(), dataContext, HistoryType.CLASS, methodsHistory, fieldsHistory);
+      HashMap<String, Set<RefactoringInfo>> fieldsHistory = new HashMap<>();
+      signatures.fields.forEach(field -> {
+        fieldsHistory.put(field, lookup.apply(field));
+      });
+
+      getToolbarWindow(project)
+          .showToolbar(lookup.apply(signatures.signature),
+              signatures.name, dataContext, HistoryType.CLASS, methodsHistory, fieldsHistory);
+    };
+    render.accept(map);
+    logShown(start);
+
+    if (signatures.path == null) {
+      return;
+    }
+    List<String> keys = new ArrayList<>(signatures.methods);
+    keys.addAll(signatures.fields);
+    keys.add(signatures.signature);
+    int known = count(map.getClassHistory(signatures.signature), keys);
+    MiningService.getInstance(project).mineFileHistory(repository, signatures.path)
+        .thenAccept(history -> ApplicationManager.getApplication().invokeLater(() -> {
+          if (count(history.getClassHistory(signatures.signature), keys) > known) {
+            render.accept(history);
+          }
+        }, project.getDisposed()));
+  }
+
+  private static int count(Map<String, Set<RefactoringInfo>> history, List<String> keys) {
+    return keys.stream().mapToInt(key -> history.getOrDefault(key, new HashSet<>()).size()).sum();
   }
 
   private void showHistoryMethod(Project project, DataContext dataContext, PsiMethod method) {
     String signature = StringUtils.calculateSignature(method);
-    System.out.println(signature);
-    getToolbarWindow(project)
+    String name = method.getName();
+    showAndMineDeeper(project, signature, () -> getToolbarWindow(project)
         .showToolbar(map.getOrDefault(signature, new HashSet<>()),
-            method.getName(), dataContext, HistoryType.METHOD, null, null);
+            name, dataContext, HistoryType.METHOD, null, null));
+  }
+
+  /**
+   * Shows the history of an element, then keeps mining further back
+   * in the background while the history of the element could go on,
+   * i.e. while its earliest refactoring is in the oldest commit of the history.
+   *
+   * @param project   the current project
+   * @param signature key of the element in the history
+   * @param render    shows the history of the element from the current map
+   */
+  private void showAndMineDeeper(Project project, String signature, Runnable render) {
+    render.run();
+    if (reachesBoundary(map, signature)) {
+      mineDeeper(project, signature, map.getOrDefault(signature, new HashSet<>()).size(),
+          render, DEEP_CHUNKS);
+    }
+  }
+
+  /**
+   * Checks whether the trail of an element starts at the boundary of the history.
+   *
+   * @param history   the refactoring history
+   * @param signature key of the element in the history
+   * @return true iff the earliest refactoring of the element is a child of the boundary
+   */
+  private static boolean reachesBoundary(MethodHistory history, String signature) {
+    String boundary = history.getBoundary();
+    return boundary != null && history.getOrDefault(signature, new HashSet<>()).stream()
+        .min(Comparator.comparingLong(RefactoringInfo::getTimestamp))
+        .map(info -> boundary.equals(info.getParent()))
+        .orElse(false);
+  }
+
+  /**
+   * Mines the next chunk past the history boundary.
+   * The toolbar is shown again as soon as older refactorings of the element are found,
+   * and mining goes on while the trail of the element still starts at the boundary.
+   *
+   * @param project   the current project
+   * @param signature key of the element in the history
+   * @param known     number of refactorings already shown
+   * @param render    shows the history of the element from the current map
+   * @param chunks    number of chunks left to mine
+   */
+  private void mineDeeper(Project project, String signature, int known, Runnable render,
+                          int chunks) {
+    if (chunks <= 0) {
+      return;
+    }
+    MiningService miner = MiningService.getInstance(project);
+    GitRepository repository = GitRepositoryManager.getInstance(project).getRepositories().get(0);
+    miner.mineDeeper(repository, DEEP_CHUNK).thenAccept(extended -> {
+      if (!extended) {
+        return;
+      }
+      ApplicationManager.getApplication().invokeLater(() -> {
+        map = miner.getRefactoringHistory();
+        int found = map.getOrDefault(signature, new HashSet<>()).size();
+        if (found > known) {
+          render.run();
+        }
+        if (reachesBoundary(map, signature)) {
+          mineDeeper(project, signature, found, render, chunks - 1);
+        }
+      }, project.getDisposed());
+    });
+  }
+
+  /**
+   * Signatures of a class and of its members, computed in a read action.
+   */
+  private static class ClassSignatures {
+    private final String signature;
+    private final String name;
+    private final List<String> methods;
+    private final List<String> fields;
+    private final String path;
+
+    private ClassSignatures(PsiClass psiClass, GitRepository repository) {
+      signature = psiClass.getQualifiedName();
+      name = psiClass.getName();
+      methods = Arrays.stream(psiClass.getMethods())
+          .map(StringUtils::calculateSignature).collect(Collectors.toList());
+      fields = Arrays.stream(psiClass.getFields())
+          .map(StringUtils::getFieldSignature).collect(Collectors.toList());
+      VirtualFile file = psiClass.getContainingFile().getVirtualFile();
+      path = file == null ? null : VfsUtilCore.getRelativePath(file, repository.getRoot());
+    }
   }
 
   @Override
@@ -0,0 +1,48 @@
+package org.jetbrains.research.refactorinsight.actions;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowAnchor;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import icons.RefactorInsightIcons;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.refactorinsight.services.RefactoringsBundle;
+import org.jetbrains.research.refactorinsight.ui.windows.RefactoringSearchWindow;
+
+/**
+ * This is the Search Refactorings Action.
+ * It opens the refactoring search tool window of the current project,
+ * registering it the first time.
+ */
+public class RefactoringSearchAction extends AnAction {
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent e) {
+    Project project = e.getProject();
+    if (project == null) {
+      return;
+    }
+    ToolWindowManager manager = ToolWindowManager.getInstance(project);
+    String id = RefactoringsBundle.message("search");
+    ToolWindow toolWindow = manager.getToolWindow(id);
+    if (toolWindow == null) {
+      toolWindow = manager.registerToolWindow(id, true, ToolWindowAnchor.BOTTOM);
+      toolWindow.setIcon(RefactorInsightIcons.toolWindow);
+      RefactoringSearchWindow window = new RefactoringSearchWindow(project);
+      Content content = ContentFactory.SERVICE.getInstance()
+          .createContent(window.getComponent(), "", false);
+      content.setDisposer(window);
+      toolWindow.getContentManager().addContent(content);
+    }
+    toolWindow.show();
+  }
+
+  @Override
+  public void update(@NotNull AnActionEvent e) {
+    e.getPresentation().setEnabled(e.getProject() != null);
+  }
+}
@@ -0,0 +1,213 @@
+package org.jetbrains.research.refactorinsight.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Refactoring history of the code elements, indexed by the class that owns them.
+ * Keys are the signatures used by the Check Refactoring History action:
+ * methods as owner.name(params), attributes as owner|name and classes by their qualified name.
+ * The owner of a key is the part before the last '|', or before the last '.' if there is none.
+ * Dots inside the parameters of a method, e.g. in Map.Entry or String..., are not counted.
+ * A class rename only visits the members of that class instead of every key.
+ * The history is built for a HEAD commit and spans a number of commits before it.
+ */
+public class MethodHistory extends AbstractMap<String, Set<RefactoringInfo>> {
+
+  private final Map<String, Map<String, Set<RefactoringInfo>>> owners =
+      new ConcurrentHashMap<>();
+  private String head;
+  private String boundary;
+  private int length = 0;
+  private long generation = 0;
+
+  /**
+   * Computes the owner of a history key.
+   *
+   * @param key method, attribute or class signature
+   * @return the owner, empty if the key has none
+   */
+  public static String ownerOf(String key) {
+    int index = key.lastIndexOf('|');
+    if (index < 0) {
+      int parameters = key.indexOf('(');
+      index = key.lastIndexOf('.', parameters < 0 ? key.length() : parameters);
+    }
+    return index < 0 ? "" : key.substring(0, index);
+  }
+
+  /**
+   * Copies this history, so that commits can be applied to the copy
+   * while this one stays valid for its head.
+   * The refactorings themselves are shared.
+   *
+   * @return the copy
+   */
+  public MethodHistory copy() {
+    MethodHistory copy = new MethodHistory();
+    owners.forEach((owner, members) -> {
+      Map<String, Set<RefactoringInfo>> copied = new ConcurrentHashMap<>();
+      members.forEach((key, infos) -> copied.put(key, new HashSet<>(infos)));
+      copy.owners.put(owner, copied);
+    });
+    copy.head = head;
+    copy.boundary = boundary;
+    copy.length = length;
+    copy.generation = generation;
+    return copy;
+  }
+
+  public String getHead() {
+    return head;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Gets the newest commit that is not part of this history.
+   *
+   * @return the commit where the history stops, null if it is not known
+   */
+  public String getBoundary() {
+    return boundary;
+  }
+
+  public void setBoundary(String boundary) {
+    this.boundary = boundary;
+  }
+
+  /**
+   * Gets the generation of the stored entries this history was built from.
+   *
+   * @return the generation of the refactorings store when the build started
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
+  public void setGeneration(long generation) {
+    this.generation = generation;
+  }
+
+  /**
+   * Records the commits applied to this history.
+   *
+   * @param head    the newest applied commit
+   * @param applied number of commits applied
+   */
+  public void advance(String head, int applied) {
+    this.head = head;
+    length += applied;
+  }
+
+  /**
+   * Gets the keys owned by a class.
+   *
+   * @param owner qualified name of the class
+   * @return a copy of the keys, safe to re-key while iterating
+   */
+  public Set<String> getMembers(String owner) {
+    Map<String, Set<RefactoringInfo>> members = owners.get(owner);
+    return members == null ? Collections.emptySet() : new HashSet<>(members.keySet());
+  }
+
+  /**
+   * Gets the history of a class and of all the keys it owns with one lookup.
+   *
+   * @param owner qualified name of the class
+   * @return a copy of the histories, the class under its own name and its members under theirs
+   */
+  public Map<String, Set<RefactoringInfo>> getClassHistory(String owner) {
+    Map<String, Set<RefactoringInfo>> history = new HashMap<>();
+    if (owner == null) {
+      return history;
+    }
+    Map<String, Set<RefactoringInfo>> members = owners.get(owner);
+    if (members != null) {
+      members.forEach((key, infos) -> history.put(key, new HashSet<>(infos)));
+    }
+    Set<RefactoringInfo> own = get(owner);
+    if (own != null) {
+      history.put(owner, new HashSet<>(own));
+    }
+    return history;
+  }
+
+  @Override
+  public Set<RefactoringInfo> get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    Map<String, Set<RefactoringInfo>> members = owners.get(ownerOf((String) key));
+    return members == null ? null : members.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public Set<RefactoringInfo> put(String key, Set<RefactoringInfo> value) {
+    return owners.computeIfAbsent(ownerOf(key), owner -> new ConcurrentHashMap<>())
+        .put(key, value);
+  }
+
+  @Override
+  public Set<RefactoringInfo> remove(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    String owner = ownerOf((String) key);
+    Map<String, Set<RefactoringInfo>> members = owners.get(owner);
+    if (members == null) {
+      return null;
+    }
+    Set<RefactoringInfo> removed = members.remove(key);
+    if (members.isEmpty()) {
+      owners.remove(owner, members);
+    }
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    owners.clear();
+  }
+
+  @Override
+  public int size() {
+    return owners.values().stream().mapToInt(Map::size).sum();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return owners.values().stream().allMatch(Map::isEmpty);
+  }
+
+  @Override
+  public Set<Entry<String, Set<RefactoringInfo>>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<String, Set<RefactoringInfo>>> iterator() {
+        return owners.values().stream()
+            .flatMap(members -> members.entrySet().stream())
+            .iterator();
+      }
+
+      @Override
+      public int size() {
+        return MethodHistory.this.size();
+      }
+    };
+  }
+}
@@ -14,8 +14,10 @@ import com.intellij.vcs.log.VcsCommitMetadata;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import org.jetbrains.research.refactorinsight.utils.StringUtils;
@@ -25,7 +27,8 @@ import org.refactoringminer.api.Refactoring;
 /**
  * Class that holds data for a single commit.
  * Each commit in the refactorings map has a RefactoringEntry object.
- * It contains the commit id, timestamp, parent, and a list of refactorings.
+ * It contains the commit id, timestamp, parent, mining scope key and a list of refactorings.
+ * The scope key is stored with the fingerprint of the globs it was last checked against.
  */
 public class RefactoringEntry implements Serializable {
 
@@ -34,6 +37,8 @@ public class RefactoringEntry implements Serializable {
   private final transient String commitId;
   private final String parent;
   private final long time;
+  private String scope;
+  private String scopeFingerprint;
   private List<RefactoringInfo> refactorings;
 
   /**
@@ -56,13 +61,15 @@ public class RefactoringEntry implements Serializable {
    */
   public static RefactoringEntry fromString(String value, String commitId) {
     String regex = StringUtils.delimiter(ENTRY, true);
-    String[] tokens = value.split(regex, 3);
-    String[] refs = tokens[2].split(regex);
+    String[] tokens = value.split(regex, 4);
+    String[] refs = tokens[3].split(regex);
     if (refs[0].isEmpty()) {
       refs = new String[0];
     }
     RefactoringEntry entry = new RefactoringEntry(
         commitId, tokens[0], Long.parseLong(tokens[1]))
+        .setScope(tokens[2].isEmpty() ? null : tokens[2].split(":", 2)[0])
+        .setScopeFingerprint(tokens[2].contains(":") ? tokens[2].split(":", 2)[1] : null)
         .setRefactorings(Arrays.stream(refs)
             .map(RefactoringInfo::fromString).collect(Collectors.toList()));
     entry.getRefactorings().forEach(r -> r.setEntry(entry));
@@ -83,20 +90,24 @@ public class RefactoringEntry implements Serializable {
         new RefactoringEntry(commit.getId().asString(),
             commit.getParents().get(0).asString(), commit.getTimestamp());
 
+    //the handlers are stateless, so each refactoring is converted as a fork/join subtask,
+    // the ranges are corrected the same way once the contents are loaded
     List<RefactoringInfo> infos =
-        refactorings.stream().map(ref -> factory.create(ref, entry)).collect(
+        refactorings.parallelStream().map(ref -> factory.create(ref, entry)).collect(
             Collectors.toList());
 
     entry.setRefactorings(infos).combineRelated();
 
-    entry.refactorings.forEach(info -> Utils.check(info, project));
+    Utils.check(entry.refactorings, project);
     return entry;
   }
 
   @Override
   public String toString() {
     String del = StringUtils.delimiter(ENTRY);
-    return parent + del + time + del + refactorings.stream()
+    String scopeToken = scope == null ? ""
+        : scopeFingerprint == null ? scope : scope + ":" + scopeFingerprint;
+    return parent + del + time + del + scopeToken + del + refactorings.stream()
         .map(RefactoringInfo::toString).collect(Collectors.joining(del));
   }
 
@@ -106,7 +117,7 @@ public class RefactoringEntry implements Serializable {
    * and move method's refactorings.
    * Secondly, it combines the refactorings that have the same group identifiers.
    */
-  private void combineRelated() {
+  void combineRelated() {
     combineRelatedExtractSuperClass();
     combineRelatedExtractClass();
 
@@ -139,64 +150,63 @@ public class RefactoringEntry implements Serializable {
   }
 
   private void combineRelatedExtractSuperClass() {
+    //Index all pull up refactorings by the class they are pulled up to
+    Map<String, List<RefactoringInfo>> pullUpsByTarget = new HashMap<>();
+    refactorings.stream()
+        .filter(info -> info.getType() == PULL_UP_ATTRIBUTE || info.getType() == PULL_UP_OPERATION)
+        .forEach(info -> pullUpsByTarget
+            .computeIfAbsent(info.getRightPath(), k -> new ArrayList<>()).add(info));
+
     //Find all extract Super Class Refactorings
-    List<RefactoringInfo> superClassRefs = refactorings.stream()
-        .filter(info -> info.getType() == EXTRACT_SUPERCLASS)
-        .collect(Collectors.toList());
+    refactorings.stream()
+        .filter(info -> info.getType() == EXTRACT_SUPERCLASS && info.getRightPath() != null)
+        .forEach(info -> {
+          //Relate
+          List<RefactoringInfo> related =
+              pullUpsByTarget.getOrDefault(info.getRightPath(), Collections.emptyList());
 
-    //Find all pull up refactorings
-    List<RefactoringInfo> pullUpRefs = refactorings.stream()
-        .filter(info -> info.getType() == PULL_UP_ATTRIBUTE || info.getType() == PULL_UP_OPERATION)
-        .collect(Collectors.toList());
-
-
-    superClassRefs.forEach(info -> {
-      String superPath = info.getRightPath();
-      //Relate
-      List<RefactoringInfo> related = pullUpRefs.stream()
-          .filter(pullUp -> pullUp.getRightPath().equals(superPath))
-          .collect(Collectors.toList());
-
-      //Combine ranges
-      related.forEach(relInfo -> {
-        relInfo.setHidden(true);
-        relInfo.getLineMarkings().forEach(line -> {
-          line.setMoreSided(true);
-          info.getLineMarkings().add(0, line);
-          info.getMoreSidedLeftPaths().add(0, new Pair<>(relInfo.getLeftPath(), false));
+          //Combine ranges
+          related.forEach(relInfo -> {
+            relInfo.setHidden(true);
+            relInfo.getLineMarkings().forEach(line -> {
+              line.setMoreSided(true);
+              info.getLineMarkings().add(0, line);
+              info.getMoreSidedLeftPaths().add(0, new Pair<>(relInfo.getLeftPath(), false));
+            });
+          });
         });
-      });
-    });
-
   }
 
   private void combineRelatedExtractClass() {
-    //find all extract class refactorings
-    List<RefactoringInfo> extractClassRefactorings = refactorings
-        .stream().filter(x -> x.getType() == EXTRACT_CLASS).collect(Collectors.toList());
-
-    List<RefactoringInfo> moves = refactorings.stream()
+    //Index all moves by their source and target class
+    Map<Pair<String, String>, List<RefactoringInfo>> movesByPaths = new HashMap<>();
+    refactorings.stream()
         .filter(info -> info.getType() == MOVE_OPERATION || info.getType() == MOVE_ATTRIBUTE)
-        .collect(Collectors.toList());
+        .forEach(info -> movesByPaths
+            .computeIfAbsent(Pair.create(info.getLeftPath(), info.getRightPath()),
+                k -> new ArrayList<>())
+            .add(info));
 
-    extractClassRefactorings.forEach(
-        extractClass -> {
+    //find all extract class refactorings
+    refactorings.stream()
+        .filter(x -> x.getType() == EXTRACT_CLASS)
+        .forEach(extractClass -> {
           String extracted = extractClass.getMidPath() == null ? extractClass.getRightPath() :
               extractClass.getMidPath();
           String leftPath = extractClass.getLeftPath();
+          if (extracted == null || leftPath == null) {
+            return;
+          }
           //Relate
-          List<RefactoringInfo> related = moves.stream()
-              .filter(move -> move.getRightPath().equals(extracted)
-                  && move.getLeftPath().equals(leftPath))
-              .collect(Collectors.toList());
+          List<RefactoringInfo> related = movesByPaths
+              .getOrDefault(Pair.create(leftPath, extracted), Collections.emptyList());
 
           //Combine ranges
           related.forEach(r -> {
             extractClass.addIncludedRefactoring(r.getName());
             r.setHidden(true);
           });
-        }
-    );
+        });
   }
 
   @Override
@@ -211,6 +221,8 @@ public class RefactoringEntry implements Serializable {
     return time == entry.time
         && Objects.equals(commitId, entry.commitId)
         && Objects.equals(parent, entry.parent)
+        && Objects.equals(scope, entry.scope)
+        && Objects.equals(scopeFingerprint, entry.scopeFingerprint)
         && Objects.equals(refactorings, entry.refactorings);
   }
 
@@ -235,5 +247,33 @@ public class RefactoringEntry implements Serializable {
   public String getCommitId() {
     return commitId;
   }
+
+  /**
+   * Gets the key of the files that were handed to RefactoringMiner.
+   *
+   * @return the scope key, null if the commit was mined without a scope
+   */
+  public String getScope() {
+    return scope;
+  }
+
+  public RefactoringEntry setScope(String scope) {
+    this.scope = scope;
+    return this;
+  }
+
+  /**
+   * Gets the fingerprint of the globs the scope key was last computed with.
+   *
+   * @return the fingerprint, null if it is unknown
+   */
+  public String getScopeFingerprint() {
+    return scopeFingerprint;
+  }
+
+  public RefactoringEntry setScopeFingerprint(String scopeFingerprint) {
+    this.scopeFingerprint = scopeFingerprint;
+    return this;
+  }
 }
 
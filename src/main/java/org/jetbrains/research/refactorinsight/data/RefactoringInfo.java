@@ -11,7 +11,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -137,7 +136,7 @@ public class RefactoringInfo {
    *
    * @param map for method history
    */
-  public void addToHistory(Map<String, Set<RefactoringInfo>> map) {
+  public void addToHistory(MethodHistory map) {
     changeKeys(map);
     String before = getNameBefore();
     String after = getNameAfter();
@@ -179,7 +178,7 @@ public class RefactoringInfo {
 
   }
 
-  private void changeKeys(Map<String, Set<RefactoringInfo>> map) {
+  private void changeKeys(MethodHistory map) {
     if ((group == Group.CLASS || group == Group.ABSTRACT || group == Group.INTERFACE)
         && !getNameBefore().equals(getNameAfter())) {
       changeAttributesSignature(map);
@@ -187,11 +186,9 @@ public class RefactoringInfo {
     }
   }
 
-  private void changeMethodsSignature(Map<String, Set<RefactoringInfo>> map) {
-    map.keySet().stream()
+  private void changeMethodsSignature(MethodHistory map) {
+    map.getMembers(getNameBefore()).stream()
         .filter(x -> !x.contains("|"))
-        .filter(x -> x.contains(".")).filter(x -> x.substring(0, x.lastIndexOf("."))
-        .equals(getNameBefore()))
         .forEach(signature -> {
           String methodName = signature.substring(signature.lastIndexOf(".") + 1);
           if (methodName.contains("(")) {
@@ -211,10 +208,9 @@ public class RefactoringInfo {
         });
   }
 
-  private void changeAttributesSignature(Map<String, Set<RefactoringInfo>> map) {
-    map.keySet().stream()
-        .filter(x -> x.contains("|")).filter(x -> x.substring(0, x.lastIndexOf("|"))
-        .equals(getNameBefore()))
+  private void changeAttributesSignature(MethodHistory map) {
+    map.getMembers(getNameBefore()).stream()
+        .filter(x -> x.contains("|"))
         .forEach(signature -> {
           String newKey = getNameAfter() + signature.substring(signature.lastIndexOf("|"));
           map.put(newKey, map.getOrDefault(signature, new HashSet<>()));
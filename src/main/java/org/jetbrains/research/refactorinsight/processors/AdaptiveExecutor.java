@@ -0,0 +1,164 @@
+package org.jetbrains.research.refactorinsight.processors;
+
+import com.intellij.openapi.util.LowMemoryWatcher;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Comparator;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pool for mining whose number of workers follows the load of the machine.
+ * After each task it grows by one worker while there is free heap, idle cores
+ * and the latency per commit does not degrade; it shrinks by one worker otherwise.
+ * The number of workers stays between the floor and the ceiling from the settings.
+ * When the IDE runs low on memory, workers stop taking new commits
+ * until enough heap is free again.
+ */
+public class AdaptiveExecutor extends ThreadPoolExecutor {
+
+  private static final long ADJUST_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+  private static final long PAUSE_CHECK = 1000;
+  private static final double LOW_HEAP = 0.2;
+  private static final double HIGH_HEAP = 0.4;
+  private static final double RESUME_HEAP = 0.3;
+  private static final double HIGH_LOAD = 1.0;
+  private static final double LOW_LOAD = 0.75;
+  private static final double LATENCY_DEGRADATION = 1.5;
+  private static final double LATENCY_WEIGHT = 0.2;
+
+  private final int minThreads;
+  private final int maxThreads;
+  private final MemoryPoolMXBean tenuredPool = findTenuredPool();
+  private final ThreadLocal<Long> started = new ThreadLocal<>();
+  private final LowMemoryWatcher memoryWatcher;
+  private final Object gate = new Object();
+  private volatile boolean paused = false;
+  private long lastAdjust = System.nanoTime();
+  private double latency = 0;
+  private double latencyBeforeGrow = 0;
+
+  /**
+   * Constructor for an adaptive executor.
+   * Starts with the floor of workers and grows from there.
+   *
+   * @param minThreads floor of workers
+   * @param maxThreads ceiling of workers
+   */
+  public AdaptiveExecutor(int minThreads, int maxThreads) {
+    super(Math.max(1, minThreads), Math.max(Math.max(1, minThreads), maxThreads),
+        60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    this.minThreads = getCorePoolSize();
+    this.maxThreads = getMaximumPoolSize();
+    memoryWatcher = LowMemoryWatcher.register(this::pause,
+        LowMemoryWatcher.LowMemoryWatcherType.ONLY_AFTER_GC);
+  }
+
+  private static MemoryPoolMXBean findTenuredPool() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP)
+        .filter(MemoryPoolMXBean::isCollectionUsageThresholdSupported)
+        .max(Comparator.comparingLong(pool -> pool.getUsage().getMax()))
+        .orElse(null);
+  }
+
+  /**
+   * Stops handing out commits and drops to the floor of workers.
+   */
+  private void pause() {
+    paused = true;
+    setCorePoolSize(minThreads);
+  }
+
+  @Override
+  protected void beforeExecute(Thread t, Runnable r) {
+    synchronized (gate) {
+      while (paused) {
+        if (freeHeapAfterGc() >= RESUME_HEAP || isShutdown()) {
+          paused = false;
+          break;
+        }
+        try {
+          gate.wait(PAUSE_CHECK);
+        } catch (InterruptedException e) {
+          t.interrupt();
+          break;
+        }
+      }
+    }
+    started.set(System.nanoTime());
+    super.beforeExecute(t, r);
+  }
+
+  @Override
+  protected void afterExecute(Runnable r, Throwable t) {
+    super.afterExecute(r, t);
+    Long start = started.get();
+    if (start != null) {
+      adjust(System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  protected void terminated() {
+    memoryWatcher.stop();
+    super.terminated();
+  }
+
+  /**
+   * Records the latency of a task and resizes the pool at most once per interval.
+   *
+   * @param taskLatency of the last task in nanoseconds
+   */
+  private synchronized void adjust(long taskLatency) {
+    latency = latency == 0 ? taskLatency
+        : LATENCY_WEIGHT * taskLatency + (1 - LATENCY_WEIGHT) * latency;
+    long now = System.nanoTime();
+    if (now - lastAdjust < ADJUST_INTERVAL || isShutdown()) {
+      return;
+    }
+    lastAdjust = now;
+    int workers = getCorePoolSize();
+    double heap = freeHeapAfterGc();
+    double load = systemLoad();
+    boolean degraded = latencyBeforeGrow > 0 && latency > LATENCY_DEGRADATION * latencyBeforeGrow;
+    if (heap < LOW_HEAP || load > HIGH_LOAD || degraded) {
+      if (workers > minThreads) {
+        setCorePoolSize(workers - 1);
+      }
+      latencyBeforeGrow = 0;
+    } else if (heap > HIGH_HEAP && load < LOW_LOAD && workers < maxThreads) {
+      latencyBeforeGrow = latency;
+      setCorePoolSize(workers + 1);
+    }
+  }
+
+  /**
+   * Computes the part of the old generation that was free after the last collection.
+   *
+   * @return the free ratio, 1 if it is not known
+   */
+  private double freeHeapAfterGc() {
+    if (tenuredPool == null) {
+      return 1;
+    }
+    MemoryUsage usage = tenuredPool.getCollectionUsage();
+    if (usage == null || usage.getMax() <= 0) {
+      return 1;
+    }
+    return 1 - (double) usage.getUsed() / usage.getMax();
+  }
+
+  /**
+   * Computes the system load average per core.
+   *
+   * @return the load per core, 0 if the platform does not report it
+   */
+  private static double systemLoad() {
+    double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+    return load < 0 ? 0 : load / Runtime.getRuntime().availableProcessors();
+  }
+}
@@ -7,11 +7,12 @@ import org.jetbrains.research.refactorinsight.services.MiningService;
 
 /**
  * The CommitListener triggers the MiningService with any new VCS event.
+ * Mining starts once the events stop coming for a short while.
  */
 public class CommitListener implements GitRepositoryChangeListener {
 
   @Override
   public void repositoryChanged(@NotNull GitRepository repository) {
-    MiningService.getInstance(repository.getProject()).mineRepo(repository);
+    MiningService.getInstance(repository.getProject()).scheduleMining(repository);
   }
 }
@@ -3,22 +3,37 @@ package org.jetbrains.research.refactorinsight.processors;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.util.Consumer;
 import com.intellij.vcs.log.VcsCommitMetadata;
 import git4idea.GitCommit;
 import git4idea.repo.GitRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
 import org.jetbrains.research.refactorinsight.services.RefactoringsBundle;
+import org.jetbrains.research.refactorinsight.services.RefactoringsListener;
+import org.jetbrains.research.refactorinsight.services.SettingsState;
 import org.refactoringminer.api.GitHistoryRefactoringMiner;
 import org.refactoringminer.api.GitService;
 import org.refactoringminer.api.Refactoring;
 import org.refactoringminer.api.RefactoringHandler;
-import org.refactoringminer.rm1.GitHistoryRefactoringMinerImpl;
 import org.refactoringminer.util.GitServiceImpl;
 
 /**
@@ -28,13 +43,21 @@ import org.refactoringminer.util.GitServiceImpl;
  */
 public class CommitMiner implements Consumer<GitCommit> {
   private static final String progress = RefactoringsBundle.message("progress");
+  private static final int CHAIN_SEGMENT = 20;
   private final ExecutorService pool;
   private final Map<String, RefactoringEntry> map;
   private final Project myProject;
   private final Repository myRepository;
   private final AtomicInteger commitsDone;
+  private final AtomicInteger commitsSkipped = new AtomicInteger(0);
+  private final AtomicInteger commitsMined = new AtomicInteger(0);
   private final ProgressIndicator progressIndicator;
   private final int limit;
+  private final boolean reuseModels;
+  private final ParseCache cache;
+  private final MiningScope scope;
+  private final String rootPath;
+  private final List<GitCommit> queued = new ArrayList<>();
 
   /**
    * misc.CommitMiner for mining a single commit.
@@ -55,6 +78,10 @@ public class CommitMiner implements Consumer<GitCommit> {
     this.commitsDone = commitsDone;
     this.progressIndicator = progressIndicator;
     this.limit = limit;
+    reuseModels = SettingsState.getInstance(myProject).reuseModels;
+    cache = ParseCache.getInstance(SettingsState.getInstance(myProject).parseCacheSize);
+    scope = MiningScope.of(SettingsState.getInstance(myProject));
+    rootPath = repository.getRoot().getPath();
   }
 
   private static Repository openRepository(final String path) {
@@ -76,14 +103,20 @@ public class CommitMiner implements Consumer<GitCommit> {
   public static void mineAtCommit(VcsCommitMetadata commit, Map<String, RefactoringEntry> map,
                                   Project project) {
     GitService gitService = new GitServiceImpl();
-    GitHistoryRefactoringMiner miner = new GitHistoryRefactoringMinerImpl();
+    SettingsState settings = SettingsState.getInstance(project);
+    MiningScope scope = MiningScope.of(settings);
+    GitHistoryRefactoringMiner miner = new SnapshotMiner(
+        ParseCache.getInstance(settings.parseCacheSize), scope);
     try {
-      miner.detectAtCommit(gitService.openRepository(project.getBasePath()),
+      Repository repository = gitService.openRepository(project.getBasePath());
+      String scopeKey = scope.key(getChangedPaths(repository, commit.getId().asString()));
+      miner.detectAtCommit(repository,
           commit.getId().asString(),
           new RefactoringHandler() {
             @Override
             public void handle(String commitId, List<Refactoring> refactorings) {
-              map.put(commitId, RefactoringEntry.convert(refactorings, commit, project));
+              store(map, RefactoringEntry.convert(refactorings, commit, project)
+                  .setScope(scopeKey).setScopeFingerprint(scope.getFingerprint()), project);
             }
           }
       );
@@ -95,39 +128,169 @@ public class CommitMiner implements Consumer<GitCommit> {
   /**
    * Mines a gitCommit.
    * Method that calls RefactoringMiner and updates the refactoring map.
+   * A commit is mined again if it was mined with a scope that selected other files,
+   * otherwise its entry is marked as checked against the current globs.
+   * When models are reused, the commit is only queued and mined on {@link #flush()}.
    * @param gitCommit to be mined
    */
   public void consume(GitCommit gitCommit) throws ProcessCanceledException {
     String commitId = gitCommit.getId().asString();
+    List<String> changedPaths = getChangedPaths(gitCommit);
+    String scopeKey = scope.key(changedPaths);
 
-    if (!map.containsKey(commitId)) {
-      pool.execute(() -> {
-        if (progressIndicator.isCanceled()) {
-          cancelProgress();
-          return;
-        }
-        GitHistoryRefactoringMiner miner = new GitHistoryRefactoringMinerImpl();
-        try {
-          miner.detectAtCommit(myRepository,
-              commitId, new RefactoringHandler() {
-                @Override
-                public void handle(String commitId, List<Refactoring> refactorings) {
-                  map.put(commitId,
-                      RefactoringEntry
-                          .convert(refactorings, gitCommit, myProject));
-                  incrementProgress();
-                }
-              });
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
-      });
+    RefactoringEntry entry = map.get(commitId);
+    if (!isMined(entry, scopeKey)) {
+      if (!gitCommit.getParents().isEmpty()
+          && changedPaths.stream().noneMatch(scope::contains)) {
+        store(map, RefactoringEntry.convert(Collections.emptyList(), gitCommit, myProject)
+            .setScope(scopeKey).setScopeFingerprint(scope.getFingerprint()), myProject);
+        commitsSkipped.incrementAndGet();
+        incrementProgress();
+        return;
+      }
+      if (reuseModels) {
+        queued.add(gitCommit);
+        return;
+      }
+      pool.execute(() -> mine(gitCommit, new SnapshotMiner(cache, scope)));
     } else {
+      if (entry.getScope() != null) {
+        entry.setScopeFingerprint(scope.getFingerprint());
+      }
       incrementProgress();
       progressIndicator.checkCanceled();
     }
   }
 
+  private boolean isMined(RefactoringEntry entry, String scopeKey) {
+    if (entry == null) {
+      return false;
+    }
+    //entries mined without a scope are only valid while no globs are set
+    return entry.getScope() == null ? scope.isEmpty() : entry.getScope().equals(scopeKey);
+  }
+
+  /**
+   * Reads the paths changed by a commit with JGit, when its changes are not loaded.
+   *
+   * @param repository the repository
+   * @param commitId   the commit
+   * @return paths relative to the repository root, before and after the changes
+   */
+  private static List<String> getChangedPaths(Repository repository, String commitId)
+      throws IOException {
+    List<String> paths = new ArrayList<>();
+    try (RevWalk walk = new RevWalk(repository);
+         TreeWalk treeWalk = new TreeWalk(repository)) {
+      RevCommit commit = walk.parseCommit(repository.resolve(commitId));
+      if (commit.getParentCount() > 0) {
+        treeWalk.addTree(walk.parseCommit(commit.getParent(0)).getTree());
+      } else {
+        treeWalk.addTree(new EmptyTreeIterator());
+      }
+      treeWalk.addTree(commit.getTree());
+      treeWalk.setRecursive(true);
+      treeWalk.setFilter(TreeFilter.ANY_DIFF);
+      while (treeWalk.next()) {
+        paths.add(treeWalk.getPathString());
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Gets the paths changed with respect to the first parent,
+   * relative to the repository root.
+   *
+   * @param gitCommit to check
+   * @return paths of the added, removed or modified files
+   */
+  private List<String> getChangedPaths(GitCommit gitCommit) {
+    return gitCommit.getChanges(0).stream()
+        .flatMap(change -> Stream.of(change.getBeforeRevision(), change.getAfterRevision()))
+        .filter(Objects::nonNull)
+        .map(ContentRevision::getFile)
+        .map(file -> FileUtil.getRelativePath(rootPath, file.getPath(), '/'))
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  public int getSkippedCommits() {
+    return commitsSkipped.get();
+  }
+
+  public int getMinedCommits() {
+    return commitsMined.get();
+  }
+
+  /**
+   * Stores the entry of a commit and publishes it on the project message bus.
+   *
+   * @param map     the inner map that should be updated
+   * @param entry   the mined entry
+   * @param project the current project
+   */
+  private static void store(Map<String, RefactoringEntry> map, RefactoringEntry entry,
+                            Project project) {
+    map.put(entry.getCommitId(), entry);
+    project.getMessageBus().syncPublisher(RefactoringsListener.TOPIC).entryStored(entry);
+  }
+
+  /**
+   * Submits the queued commits grouped in first-parent chains.
+   * Each chain is split in segments of a few commits, and each segment is mined from
+   * the oldest to the newest commit on the same worker, so the models of the last snapshot
+   * can be reused by the next commit. The segments of a chain run in parallel,
+   * each one seeding its own snapshot.
+   */
+  public void flush() {
+    List<GitCommit> commits = new ArrayList<>(queued);
+    queued.clear();
+    //git log lists children first
+    Collections.reverse(commits);
+    Map<String, List<GitCommit>> chains = new HashMap<>();
+    for (GitCommit commit : commits) {
+      List<GitCommit> chain = commit.getParents().isEmpty() ? null
+          : chains.remove(commit.getParents().get(0).asString());
+      if (chain == null) {
+        chain = new ArrayList<>();
+      }
+      chain.add(commit);
+      chains.put(commit.getId().asString(), chain);
+    }
+    for (List<GitCommit> chain : chains.values()) {
+      for (int i = 0; i < chain.size(); i += CHAIN_SEGMENT) {
+        List<GitCommit> segment = chain.subList(i, Math.min(i + CHAIN_SEGMENT, chain.size()));
+        pool.execute(() -> {
+          SnapshotMiner miner = new SnapshotMiner(cache, scope);
+          segment.forEach(commit -> mine(commit, miner));
+        });
+      }
+    }
+  }
+
+  private void mine(GitCommit gitCommit, GitHistoryRefactoringMiner miner) {
+    if (progressIndicator.isCanceled()) {
+      cancelProgress();
+      return;
+    }
+    try {
+      miner.detectAtCommit(myRepository,
+          gitCommit.getId().asString(), new RefactoringHandler() {
+            @Override
+            public void handle(String commitId, List<Refactoring> refactorings) {
+              store(map, RefactoringEntry.convert(refactorings, gitCommit, myProject)
+                  .setScope(scope.key(getChangedPaths(gitCommit)))
+                  .setScopeFingerprint(scope.getFingerprint()), myProject);
+              commitsMined.incrementAndGet();
+              incrementProgress();
+            }
+          });
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
   /**
    * Increments the progress bar with each mined commit.
    */
@@ -0,0 +1,96 @@
+package org.jetbrains.research.refactorinsight.processors;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jetbrains.research.refactorinsight.services.SettingsState;
+
+/**
+ * The paths of a repository that are mined for refactorings.
+ * Holds the include and exclude globs from the settings, matched against
+ * paths relative to the repository root.
+ * An empty include list includes every path.
+ */
+public class MiningScope {
+
+  private final List<PathMatcher> includes;
+  private final List<PathMatcher> excludes;
+  private final String fingerprint;
+
+  /**
+   * Constructor for a mining scope.
+   *
+   * @param includes comma or newline separated globs of the paths to mine
+   * @param excludes comma or newline separated globs of the paths to skip
+   */
+  public MiningScope(String includes, String excludes) {
+    this.includes = matchers(includes);
+    this.excludes = matchers(excludes);
+    fingerprint = Integer.toHexString((includes + "|" + excludes).hashCode());
+  }
+
+  public static MiningScope of(SettingsState settings) {
+    return new MiningScope(settings.includePaths, settings.excludePaths);
+  }
+
+  private static List<PathMatcher> matchers(String globs) {
+    if (globs == null) {
+      return List.of();
+    }
+    return Arrays.stream(globs.split("[,\\n]"))
+        .map(String::trim)
+        .filter(glob -> !glob.isEmpty())
+        .map(glob -> FileSystems.getDefault().getPathMatcher("glob:" + glob))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Identifies the globs of this scope.
+   *
+   * @return a hash of the include and exclude globs
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public boolean isEmpty() {
+    return includes.isEmpty() && excludes.isEmpty();
+  }
+
+  /**
+   * Checks if a java file should be handed to RefactoringMiner.
+   *
+   * @param path relative to the repository root
+   * @return true iff the path is a java file inside the scope
+   */
+  public boolean contains(String path) {
+    if (!path.endsWith(".java")) {
+      return false;
+    }
+    Path p = Paths.get(path);
+    return (includes.isEmpty() || includes.stream().anyMatch(m -> m.matches(p)))
+        && excludes.stream().noneMatch(m -> m.matches(p));
+  }
+
+  /**
+   * Computes the part of the cache key that depends on the scope.
+   * It only changes if the set of mined files of a commit changes,
+   * so editing the globs only invalidates the commits they affect.
+   *
+   * @param changedPaths paths changed by a commit
+   * @return a key for the mined files
+   */
+  public String key(Collection<String> changedPaths) {
+    return Integer.toHexString(changedPaths.stream()
+        .filter(this::contains)
+        .distinct()
+        .sorted()
+        .collect(Collectors.joining("\n"))
+        .hashCode());
+  }
+}
@@ -0,0 +1,177 @@
+package org.jetbrains.research.refactorinsight.processors;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import gr.uom.java.xmi.UMLClass;
+import gr.uom.java.xmi.UMLGeneralization;
+import gr.uom.java.xmi.UMLModel;
+import gr.uom.java.xmi.UMLRealization;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of per-file UML models, keyed by the git blob id and the path of the file,
+ * since the locations in a model depend on its path.
+ * It lives in the IDE system directory, so it is shared by all projects and clones
+ * and survives clearing the refactorings cache.
+ * The cache is bounded by size; the least recently used files are evicted first.
+ */
+public class ParseCache {
+
+  private static final Logger LOG = Logger.getInstance(ParseCache.class);
+  private static final String FORMAT = "2";
+  private static ParseCache instance;
+
+  private final File directory;
+  private final AtomicLong size = new AtomicLong();
+  private volatile long limit;
+
+  ParseCache(File directory, long limit) {
+    this.directory = directory;
+    this.limit = limit;
+    directory.mkdirs();
+    size.set(files().stream().mapToLong(File::length).sum());
+  }
+
+  /**
+   * Gets the cache of this IDE instance.
+   *
+   * @param limitMb maximum size of the cache in megabytes.
+   * @return the cache
+   */
+  public static synchronized ParseCache getInstance(int limitMb) {
+    if (instance == null) {
+      instance = new ParseCache(
+          new File(PathManager.getSystemPath(), "refactorinsight/models/" + FORMAT), 0);
+    }
+    instance.limit = limitMb * 1024L * 1024L;
+    return instance;
+  }
+
+  /**
+   * Looks up the model of a file.
+   *
+   * @param blobId      git object id of the file content
+   * @param path        path of the file, the model locations depend on it
+   * @param directories repository directories of the snapshot the model is used in
+   * @return the cached model or null
+   */
+  @SuppressWarnings("unchecked")
+  public UMLModel get(String blobId, String path, Set<String> directories) {
+    if (limit <= 0) {
+      return null;
+    }
+    File file = fileFor(blobId, path);
+    if (!file.exists()) {
+      return null;
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(
+        new BufferedInputStream(new FileInputStream(file))))) {
+      if (!path.equals(in.readUTF())) {
+        return null;
+      }
+      UMLModel model = new UMLModel(directories);
+      ((List<UMLClass>) in.readObject()).forEach(model::addClass);
+      ((List<UMLGeneralization>) in.readObject()).forEach(model::addGeneralization);
+      ((List<UMLRealization>) in.readObject()).forEach(model::addRealization);
+      file.setLastModified(System.currentTimeMillis());
+      return model;
+    } catch (Exception e) {
+      long length = file.length();
+      if (file.delete()) {
+        size.addAndGet(-length);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Stores the model of a file.
+   *
+   * @param blobId git object id of the file content
+   * @param path   path of the file
+   * @param model  parsed model of this file only
+   */
+  public void put(String blobId, String path, UMLModel model) {
+    if (limit <= 0) {
+      return;
+    }
+    File file = fileFor(blobId, path);
+    File temp = null;
+    try {
+      file.getParentFile().mkdirs();
+      temp = File.createTempFile(blobId, ".tmp", file.getParentFile());
+      try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(
+          new BufferedOutputStream(new FileOutputStream(temp))))) {
+        out.writeUTF(path);
+        out.writeObject(new ArrayList<>(model.getClassList()));
+        out.writeObject(new ArrayList<>(model.getGeneralizationList()));
+        out.writeObject(new ArrayList<>(model.getRealizationList()));
+      }
+      long old = file.length();
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      if (size.addAndGet(file.length() - old) > limit) {
+        evict();
+      }
+    } catch (IOException e) {
+      LOG.warn(String.format("Could not cache the model of %s at %s", path, blobId), e);
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * Removes the least recently used files until the cache is at 90% of its limit.
+   */
+  private synchronized void evict() {
+    if (size.get() <= limit) {
+      return;
+    }
+    List<File> files = files();
+    files.sort(Comparator.comparingLong(File::lastModified));
+    for (File file : files) {
+      if (size.get() <= limit * 9 / 10) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        size.addAndGet(-length);
+      }
+    }
+  }
+
+  private List<File> files() {
+    List<File> files = new ArrayList<>();
+    File[] buckets = directory.listFiles(File::isDirectory);
+    if (buckets != null) {
+      Arrays.stream(buckets)
+          .map(bucket -> bucket.listFiles(f -> !f.getName().endsWith(".tmp")))
+          .filter(Objects::nonNull)
+          .forEach(f -> files.addAll(Arrays.asList(f)));
+    }
+    return files;
+  }
+
+  private File fileFor(String blobId, String path) {
+    return new File(new File(directory, blobId.substring(0, 2)),
+        blobId.substring(2) + String.format("-%08x", path.hashCode()));
+  }
+}
@@ -0,0 +1,149 @@
+package org.jetbrains.research.refactorinsight.processors;
+
+import gr.uom.java.xmi.UMLModel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.refactoringminer.api.RefactoringHandler;
+import org.refactoringminer.rm1.GitHistoryRefactoringMinerImpl;
+
+/**
+ * RefactoringMiner that remembers the per-file UML models of the last parsed snapshot.
+ * Meant to mine a first-parent chain in order, on the same thread:
+ * the "after" snapshot of a commit is the "before" snapshot of its child,
+ * so files with the same blob id are not parsed again.
+ * Blob ids are read from the trees of the commit and of its parent.
+ * Files missing from the last snapshot are looked up in the {@link ParseCache}
+ * before being parsed.
+ * Files outside of the {@link MiningScope} are not handed to RefactoringMiner.
+ */
+public class SnapshotMiner extends GitHistoryRefactoringMinerImpl {
+
+  private final ParseCache cache;
+  private final MiningScope scope;
+  private final Deque<Map<String, String>> treeBlobIds = new ArrayDeque<>();
+  private Map<String, FileModel> lastSnapshot = new HashMap<>();
+
+  public SnapshotMiner(ParseCache cache, MiningScope scope) {
+    this.cache = cache;
+    this.scope = scope;
+  }
+
+  /**
+   * Reads the blob ids of the parent and of the commit before mining it.
+   * RefactoringMiner builds the model of the parent first, then the one of the commit.
+   */
+  @Override
+  public void detectAtCommit(Repository repository, String commitId, RefactoringHandler handler) {
+    treeBlobIds.clear();
+    try (RevWalk walk = new RevWalk(repository)) {
+      RevCommit commit = walk.parseCommit(repository.resolve(commitId));
+      if (commit.getParentCount() > 0) {
+        treeBlobIds.add(blobIds(repository, walk.parseCommit(commit.getParent(0)).getTree()));
+      }
+      treeBlobIds.add(blobIds(repository, commit.getTree()));
+    } catch (Exception e) {
+      e.printStackTrace();
+      treeBlobIds.clear();
+    }
+    super.detectAtCommit(repository, commitId, handler);
+  }
+
+  @Override
+  protected UMLModel createModel(Map<String, String> fileContents,
+                                 Set<String> repositoryDirectories) throws Exception {
+    Map<String, String> blobIds = treeBlobIds.isEmpty()
+        ? Collections.emptyMap() : treeBlobIds.poll();
+    Map<String, FileModel> snapshot = new HashMap<>();
+    UMLModel model = new UMLModel(repositoryDirectories);
+    for (Map.Entry<String, String> file : fileContents.entrySet()) {
+      if (!scope.contains(file.getKey())) {
+        continue;
+      }
+      String blobId = blobIds.get(file.getKey());
+      if (blobId == null) {
+        blobId = blobId(file.getValue());
+      }
+      FileModel fileModel = lastSnapshot.get(file.getKey());
+      if (fileModel == null || !fileModel.blobId.equals(blobId)) {
+        fileModel = new FileModel(blobId,
+            parse(file.getKey(), file.getValue(), blobId, repositoryDirectories));
+      }
+      snapshot.put(file.getKey(), fileModel);
+      merge(model, fileModel.model);
+    }
+    lastSnapshot = snapshot;
+    return model;
+  }
+
+  private UMLModel parse(String path, String content, String blobId,
+                         Set<String> repositoryDirectories) throws Exception {
+    UMLModel model = cache.get(blobId, path, repositoryDirectories);
+    if (model == null) {
+      model = super.createModel(Collections.singletonMap(path, content), repositoryDirectories);
+      cache.put(blobId, path, model);
+    }
+    return model;
+  }
+
+  /**
+   * Reads the blob ids of the in-scope files of a tree.
+   *
+   * @param repository the repository
+   * @param tree       of the commit
+   * @return blob ids by path
+   */
+  private Map<String, String> blobIds(Repository repository, RevTree tree) throws Exception {
+    Map<String, String> blobIds = new HashMap<>();
+    try (TreeWalk treeWalk = new TreeWalk(repository)) {
+      treeWalk.addTree(tree);
+      treeWalk.setRecursive(true);
+      while (treeWalk.next()) {
+        String path = treeWalk.getPathString();
+        if (scope.contains(path)) {
+          blobIds.put(path, treeWalk.getObjectId(0).name());
+        }
+      }
+    }
+    return blobIds;
+  }
+
+  /**
+   * Computes the git object id of a file content, as git would for a blob.
+   * Used when the blob id could not be read from the tree.
+   *
+   * @param content of the file
+   * @return the blob id
+   */
+  public static String blobId(String content) {
+    return new ObjectInserter.Formatter()
+        .idFor(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8)).name();
+  }
+
+  private static void merge(UMLModel target, UMLModel fileModel) {
+    fileModel.getClassList().forEach(target::addClass);
+    fileModel.getGeneralizationList().forEach(target::addGeneralization);
+    fileModel.getRealizationList().forEach(target::addRealization);
+  }
+
+  private static class FileModel {
+    private final String blobId;
+    private final UMLModel model;
+
+    FileModel(String blobId, UMLModel model) {
+      this.blobId = blobId;
+      this.model = model;
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package org.jetbrains.research.refactorinsight.services;
+
+/**
+ * Summary of a mining run.
+ */
+public class MiningReport {
+  private final int known;
+  private final int mined;
+  private final int skipped;
+  private final boolean canceled;
+
+  /**
+   * Constructor for a mining report.
+   *
+   * @param known    commits that were already mined before the run
+   * @param mined    commits handed to RefactoringMiner
+   * @param skipped  commits without java changes in the mining scope
+   * @param canceled true iff the run was canceled before it was done
+   */
+  public MiningReport(int known, int mined, int skipped, boolean canceled) {
+    this.known = known;
+    this.mined = mined;
+    this.skipped = skipped;
+    this.canceled = canceled;
+  }
+
+  public int getKnown() {
+    return known;
+  }
+
+  public int getMined() {
+    return mined;
+  }
+
+  public int getSkipped() {
+    return skipped;
+  }
+
+  public boolean isCanceled() {
+    return canceled;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("known: %d, mined: %d, skipped: %d%s",
+        known, mined, skipped, canceled ? ", canceled" : "");
+  }
+}
@@ -1,33 +1,48 @@
 package org.jetbrains.research.refactorinsight.services;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.PersistentStateComponent;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Alarm;
+import com.intellij.util.ArrayUtil;
 import com.intellij.util.xmlb.annotations.OptionTag;
 import com.intellij.vcs.log.VcsCommitMetadata;
 import git4idea.history.GitHistoryUtils;
 import git4idea.repo.GitRepository;
+import git4idea.repo.GitRepositoryManager;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.refactorinsight.data.MethodHistory;
 import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
-import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
+import org.jetbrains.research.refactorinsight.processors.AdaptiveExecutor;
 import org.jetbrains.research.refactorinsight.processors.CommitMiner;
+import org.jetbrains.research.refactorinsight.processors.MiningScope;
 import org.jetbrains.research.refactorinsight.ui.windows.GitWindow;
 import org.jetbrains.research.refactorinsight.utils.Utils;
 
@@ -40,22 +55,69 @@ import org.jetbrains.research.refactorinsight.utils.Utils;
 @State(name = "MiningRefactoringsState",
     storages = {@Storage("refactorings.xml")})
 @Service
-public class MiningService implements PersistentStateComponent<MiningService.MyState> {
+public class MiningService implements PersistentStateComponent<MiningService.MyState>,
+    Disposable {
 
-  public static ConcurrentHashMap<String, Set<RefactoringInfo>> methodHistory
-      = new ConcurrentHashMap<String, Set<RefactoringInfo>>();
-  private boolean mining = false;
+  private static final Logger LOG = Logger.getInstance(MiningService.class);
+  private static final int DETAILS_BATCH = 200;
+  private static final int MINING_DELAY = 1000;
+  private static final int HISTORY_SNAPSHOTS = 4;
+  private static final int FILE_HISTORY_LIMIT = 1000;
+  private static final int PROGRESS_CHECK = 5;
+  private static final int STALL_LIMIT = 10;
+  private final Project project;
   private MyState innerState = new MyState();
+  private final Alarm miningAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+  private final Set<VirtualFile> runningRepositories = new HashSet<>();
+  private final Map<VirtualFile, Integer> pendingRepositories = new HashMap<>();
+  private final Map<VirtualFile, CompletableFuture<MiningReport>> pendingReports =
+      new HashMap<>();
+  private final Map<VirtualFile, List<Runnable>> waitingRuns = new HashMap<>();
+  private final Map<VirtualFile, Runnable> scheduledRuns = new HashMap<>();
+  private final Map<String, CompletableFuture<RefactoringEntry>> waitingEntries =
+      new ConcurrentHashMap<>();
+  private final Set<String> queuedCommits = ConcurrentHashMap.newKeySet();
+  private final Object historyLock = new Object();
+  private final AtomicBoolean deepening = new AtomicBoolean(false);
+  private final AtomicLong generation = new AtomicLong();
+  private final Map<String, Long> storedGenerations = new ConcurrentHashMap<>();
+  private volatile long resetGeneration = 0;
+  private volatile MethodHistory methodHistory = new MethodHistory();
+  private final Map<String, MethodHistory> histories =
+      new LinkedHashMap<>(HISTORY_SNAPSHOTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MethodHistory> eldest) {
+          return size() > HISTORY_SNAPSHOTS;
+        }
+      };
 
-  public MiningService() {
+  /**
+   * Constructor for the mining service of a project.
+   * Completes the futures waiting for an entry as soon as it is stored,
+   * and records the generation it was stored at.
+   * The refactoring index is created first, so that it listens to every stored entry.
+   *
+   * @param project the current project
+   */
+  public MiningService(@NotNull Project project) {
+    this.project = project;
+    RefactoringIndex.getInstance(project);
+    project.getMessageBus().connect(this).subscribe(RefactoringsListener.TOPIC, entry -> {
+      storedGenerations.put(entry.getCommitId(), generation.incrementAndGet());
+      queuedCommits.remove(entry.getCommitId());
+      CompletableFuture<RefactoringEntry> future = waitingEntries.remove(entry.getCommitId());
+      if (future != null) {
+        future.complete(entry);
+      }
+    });
   }
 
   public static MiningService getInstance(@NotNull Project project) {
     return ServiceManager.getService(project, MiningService.class);
   }
 
-  public boolean isMining() {
-    return mining;
+  public synchronized boolean isMining() {
+    return !runningRepositories.isEmpty();
   }
 
   @Override
@@ -65,98 +127,430 @@ public class MiningService implements PersistentStateComponent<MiningService.MyS
 
   @Override
   public void loadState(MyState state) {
+    resetGeneration = generation.incrementAndGet();
+    storedGenerations.clear();
     if (Utils.version().equals(state.refactoringsMap.version)) {
       innerState = state;
     } else {
       innerState = new MyState();
       innerState.refactoringsMap.version = Utils.version();
     }
+    RefactoringIndex.getInstance(project).resync();
+    SearchIndex.getInstance(project).resync();
+    if (!innerState.historyHeads.isEmpty()) {
+      ApplicationManager.getApplication().executeOnPooledThread(this::restoreRefactoringHistories);
+    }
+  }
+
+  @Override
+  public void dispose() {
+    waitingEntries.values().forEach(future -> future.cancel(false));
+  }
+
+  /**
+   * Schedules mining of the git repo after a short quiet period.
+   * Bursts of repository events, e.g. during a rebase or a checkout,
+   * are folded into a single mining run per repository.
+   *
+   * @param repository GitRepository
+   */
+  public void scheduleMining(GitRepository repository) {
+    synchronized (scheduledRuns) {
+      Runnable run = scheduledRuns.computeIfAbsent(repository.getRoot(), root -> () -> {
+        synchronized (scheduledRuns) {
+          scheduledRuns.remove(root);
+        }
+        mineRepo(repository);
+      });
+      miningAlarm.cancelRequest(run);
+      miningAlarm.addRequest(run, MINING_DELAY);
+    }
+  }
+
+  /**
+   * Marks the repository as being mined.
+   * If it is already being mined, the request is kept and run once the current run is done.
+   *
+   * @param repository GitRepository
+   * @param limit      int
+   * @return null iff mining can start now, else the report of the pending run
+   */
+  private synchronized CompletableFuture<MiningReport> startMining(GitRepository repository,
+                                                                   int limit) {
+    if (runningRepositories.add(repository.getRoot())) {
+      return null;
+    }
+    pendingRepositories.merge(repository.getRoot(), limit, Math::max);
+    return pendingReports.computeIfAbsent(repository.getRoot(), r -> new CompletableFuture<>());
+  }
+
+  /**
+   * Runs a mining task once no other run mines the repository.
+   * The task has to call {@link #finishMining(GitRepository)} when it is done.
+   *
+   * @param repository GitRepository
+   * @param run        starts the task
+   */
+  private void whenIdle(GitRepository repository, Runnable run) {
+    synchronized (this) {
+      if (!runningRepositories.add(repository.getRoot())) {
+        waitingRuns.computeIfAbsent(repository.getRoot(), root -> new ArrayList<>()).add(run);
+        return;
+      }
+    }
+    run.run();
+  }
+
+  /**
+   * Marks the repository as done, then starts the next waiting task or the pending run.
+   *
+   * @param repository GitRepository
+   */
+  private void finishMining(GitRepository repository) {
+    Runnable next = null;
+    Integer pending = null;
+    CompletableFuture<MiningReport> pendingReport = null;
+    synchronized (this) {
+      List<Runnable> waiting = waitingRuns.get(repository.getRoot());
+      if (waiting != null) {
+        next = waiting.remove(0);
+        if (waiting.isEmpty()) {
+          waitingRuns.remove(repository.getRoot());
+        }
+      } else {
+        runningRepositories.remove(repository.getRoot());
+        pending = pendingRepositories.remove(repository.getRoot());
+        pendingReport = pendingReports.remove(repository.getRoot());
+      }
+    }
+    if (next != null) {
+      next.run();
+    } else if (pending != null) {
+      CompletableFuture<MiningReport> report = pendingReport;
+      mineRange(repository, pending).whenComplete((done, throwable) -> {
+        if (throwable != null) {
+          report.completeExceptionally(throwable);
+        } else {
+          report.complete(done);
+        }
+      });
+    }
   }
 
   /**
    * Mine complete git repo for refactorings.
    *
    * @param repository GitRepository
+   * @return the report of the mining run
    */
-  public void mineAll(GitRepository repository) {
+  public CompletableFuture<MiningReport> mineAll(GitRepository repository) {
     int limit = Integer.MAX_VALUE;
     try {
       limit = Utils.getCommitCount(repository);
     } catch (Exception e) {
       e.printStackTrace();
-    } finally {
-      mineRepo(repository, limit);
     }
+    return mineRange(repository, limit);
   }
 
   /**
    * Mine git repo for refactorings.
    *
    * @param repository GitRepository
+   * @return the report of the mining run
    */
-  public void mineRepo(GitRepository repository) {
+  public CompletableFuture<MiningReport> mineRepo(GitRepository repository) {
     int limit = SettingsState.getInstance(repository.getProject()).commitLimit;
     try {
       limit = Math.min(Utils.getCommitCount(repository), limit);
     } catch (Exception e) {
       e.printStackTrace();
-    } finally {
-      mineRepo(repository, limit);
     }
+    return mineRange(repository, limit);
   }
 
   /**
-   * Mine repo with limit.
+   * Mines the last commits of a git repo for refactorings.
+   * Every entry is published on the {@link RefactoringsListener#TOPIC} as soon as it is stored.
+   * Requests for a repository that is already being mined are folded into one run,
+   * started after the current one is done.
    *
    * @param repository GitRepository
-   * @param limit      int
+   * @param limit      number of commits to walk back from HEAD
+   * @return the report of the mining run, completed once the history is computed
    */
-  public void mineRepo(GitRepository repository, int limit) {
+  public CompletableFuture<MiningReport> mineRange(GitRepository repository, int limit) {
+    CompletableFuture<MiningReport> pendingReport = startMining(repository, limit);
+    if (pendingReport != null) {
+      return pendingReport;
+    }
+    CompletableFuture<MiningReport> result = new CompletableFuture<>();
     ProgressManager.getInstance()
         .run(new Task.Backgroundable(repository.getProject(), "Mining refactorings", true) {
-          
-          @Override
-          public void onCancel() {
-            super.onCancel();
-          }
 
           public void run(@NotNull ProgressIndicator progressIndicator) {
-            mining = true;
-            progressIndicator.setText(RefactoringsBundle.message("mining"));
-            progressIndicator.setIndeterminate(false);
-            int cores = SettingsState
-                .getInstance(repository.getProject()).threads;
-            ExecutorService pool = Executors.newFixedThreadPool(cores);
-            AtomicInteger commitsDone = new AtomicInteger(0);
-            CommitMiner miner =
-                new CommitMiner(pool, innerState.refactoringsMap.map, repository, commitsDone,
-                    progressIndicator,
-                    limit);
-            progressIndicator.checkCanceled();
+            MiningReport report = null;
             try {
-              String logArgs = "--max-count=" + limit;
-              progressIndicator.checkCanceled();
-              GitHistoryUtils.loadDetails(repository.getProject(), repository.getRoot(),
-                  miner, logArgs);
-              progressIndicator.checkCanceled();
+              report = mine(repository, Utils.getCommitHashes(repository, limit), limit,
+                  progressIndicator);
+              if (repository.getCurrentRevision() != null) {
+                computeRefactoringHistory(repository.getCurrentRevision(),
+                    repository.getProject());
+              }
+              progressIndicator.setText(String.format(
+                  RefactoringsBundle.message("finished.skipped"), report.getSkipped()));
             } catch (Exception exception) {
               exception.printStackTrace();
             } finally {
-              mining = false;
+              finishMining(repository);
+              if (report != null) {
+                result.complete(report);
+              } else {
+                result.complete(new MiningReport(0, 0, 0, true));
+              }
             }
-            pool.shutdown();
+          }
+        });
+    return result;
+  }
+
+  /**
+   * Mines the given commits and waits for the workers to be done.
+   *
+   * @param repository GitRepository
+   * @param commitIds  commits to mine, newest first
+   * @param limit      total used for the progress
+   * @return the report of the run
+   */
+  private MiningReport mine(GitRepository repository, List<String> commitIds, int limit,
+                            ProgressIndicator progressIndicator) throws Exception {
+    progressIndicator.setText(RefactoringsBundle.message("mining"));
+    progressIndicator.setIndeterminate(false);
+    SettingsState settings = SettingsState.getInstance(repository.getProject());
+    ExecutorService pool = new AdaptiveExecutor(settings.minThreads, settings.threads);
+    AtomicInteger commitsDone = new AtomicInteger(0);
+    CommitMiner miner =
+        new CommitMiner(pool, innerState.refactoringsMap.map, repository, commitsDone,
+            progressIndicator, limit);
+    MiningScope scope = MiningScope.of(settings);
+    List<String> commits = new ArrayList<>();
+    try {
+      progressIndicator.checkCanceled();
+      for (String commitId : commitIds) {
+        if (isMined(commitId, scope)) {
+          commitsDone.incrementAndGet();
+        } else {
+          commits.add(commitId);
+        }
+      }
+      queuedCommits.addAll(commits);
+      progressIndicator.checkCanceled();
+      for (int i = 0; i < commits.size(); i += DETAILS_BATCH) {
+        List<String> logArgs = new ArrayList<>();
+        logArgs.add("--no-walk");
+        logArgs.addAll(commits.subList(i, Math.min(i + DETAILS_BATCH, commits.size())));
+        GitHistoryUtils.loadDetails(repository.getProject(), repository.getRoot(),
+            miner, ArrayUtil.toStringArray(logArgs));
+        progressIndicator.checkCanceled();
+      }
+      miner.flush();
+    } finally {
+      pool.shutdown();
+      awaitWorkers(pool, commitsDone, progressIndicator);
+      releaseQueued(commits);
+    }
+    return new MiningReport(commitIds.size() - commits.size(), miner.getMinedCommits(),
+        miner.getSkippedCommits(), progressIndicator.isCanceled());
+  }
+
+  /**
+   * Waits for the workers of a run to finish, for as long as they make progress.
+   * Workers are interrupted if the run is canceled or no commit is done for a while,
+   * but the run only ends once they stopped, so no other run stores the same commits.
+   *
+   * @param pool        the workers
+   * @param commitsDone number of commits done, to follow the progress
+   * @param indicator   of the run
+   */
+  private static void awaitWorkers(ExecutorService pool, AtomicInteger commitsDone,
+                                   ProgressIndicator indicator) throws InterruptedException {
+    int done = commitsDone.get();
+    long lastProgress = System.nanoTime();
+    boolean interrupted = false;
+    while (!pool.awaitTermination(PROGRESS_CHECK, TimeUnit.SECONDS)) {
+      if (commitsDone.get() != done) {
+        done = commitsDone.get();
+        lastProgress = System.nanoTime();
+      }
+      boolean stalled = System.nanoTime() - lastProgress > TimeUnit.MINUTES.toNanos(STALL_LIMIT);
+      if (!interrupted && (indicator.isCanceled() || stalled)) {
+        if (stalled) {
+          LOG.warn(String.format("No commit mined for %d minutes, interrupting the workers",
+              STALL_LIMIT));
+        }
+        pool.shutdownNow();
+        interrupted = true;
+      }
+    }
+  }
+
+  /**
+   * Drops the commits of a finished run from the queue.
+   * Futures still waiting for one of them are canceled, the run did not store it.
+   *
+   * @param commits the commits queued by the run
+   */
+  private void releaseQueued(List<String> commits) {
+    queuedCommits.removeAll(commits);
+    for (String commitId : commits) {
+      CompletableFuture<RefactoringEntry> future = waitingEntries.get(commitId);
+      if (future != null && !contains(commitId) && waitingEntries.remove(commitId, future)) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Checks whether a commit can be skipped without loading its details.
+   * An entry is only skipped if its scope key was computed with the current globs,
+   * other entries are checked again against their scope keys.
+   *
+   * @param commitId to check
+   * @param scope    the current mining scope
+   * @return true iff the commit is already mined in this scope
+   */
+  private boolean isMined(String commitId, MiningScope scope) {
+    RefactoringEntry entry = get(commitId);
+    if (entry == null) {
+      return false;
+    }
+    return entry.getScope() == null
+        ? scope.isEmpty() : scope.getFingerprint().equals(entry.getScopeFingerprint());
+  }
+
+  /**
+   * Gets the entry of a commit, mining it in the background if it is not stored yet.
+   * Commits queued by a running batch are not mined twice,
+   * the future completes once the batch stores them.
+   *
+   * @param commitId the commit to look up
+   * @return the entry, completed once it is stored;
+   *     canceled if the commit could not be mined
+   */
+  public CompletableFuture<RefactoringEntry> entryFor(String commitId) {
+    return entryFor(commitId, () -> {
+      List<GitRepository> repositories =
+          GitRepositoryManager.getInstance(project).getRepositories();
+      if (!repositories.isEmpty()) {
+        mineCommit(repositories.get(0), commitId);
+      }
+    });
+  }
+
+  /**
+   * Gets the entry of a commit, mining it in the background if it is not stored yet.
+   * Commits queued by a running batch are not mined twice,
+   * the future completes once the batch stores them.
+   *
+   * @param commit the commit to look up
+   * @return the entry, completed once it is stored;
+   *     canceled if the commit could not be mined
+   */
+  public CompletableFuture<RefactoringEntry> entryFor(VcsCommitMetadata commit) {
+    return entryFor(commit.getId().asString(), () -> mineCommit(commit));
+  }
 
+  private CompletableFuture<RefactoringEntry> entryFor(String commitId, Runnable mining) {
+    RefactoringEntry entry = get(commitId);
+    if (entry != null) {
+      return CompletableFuture.completedFuture(entry);
+    }
+    if (queuedCommits.contains(commitId)) {
+      CompletableFuture<RefactoringEntry> future =
+          waitingEntries.computeIfAbsent(commitId, id -> new CompletableFuture<>());
+      //the batch may have stored it in the meantime
+      entry = get(commitId);
+      if (entry != null && waitingEntries.remove(commitId, future)) {
+        future.complete(entry);
+      }
+      return future;
+    }
+    return mineEntry(commitId, mining);
+  }
+
+  /**
+   * Mines a single commit in the background.
+   * Callers asking for a commit that is already being mined share the same future.
+   *
+   * @param commitId the commit to mine
+   * @param mining   stores the entry of the commit
+   * @return the entry, completed once it is stored
+   */
+  private CompletableFuture<RefactoringEntry> mineEntry(String commitId, Runnable mining) {
+    CompletableFuture<RefactoringEntry> created = new CompletableFuture<>();
+    CompletableFuture<RefactoringEntry> future = waitingEntries.putIfAbsent(commitId, created);
+    if (future != null) {
+      return future;
+    }
+    ProgressManager.getInstance()
+        .run(new Task.Backgroundable(project, String.format(
+            RefactoringsBundle.message("mining.at"), commitId)) {
+
+          public void run(@NotNull ProgressIndicator progressIndicator) {
             try {
-              pool.awaitTermination(5, TimeUnit.MINUTES);
-            } catch (InterruptedException e) {
-              e.printStackTrace();
-            }
-            if (repository.getCurrentRevision() != null) {
-              computeRefactoringHistory(repository.getCurrentRevision(), repository.getProject());
+              mining.run();
+            } finally {
+              //completes the future if the entry was stored before it was registered
+              RefactoringEntry entry = get(commitId);
+              waitingEntries.remove(commitId, created);
+              if (entry != null) {
+                created.complete(entry);
+              } else {
+                created.cancel(false);
+              }
             }
-            progressIndicator.setText(RefactoringsBundle.message("finished"));
           }
         });
+    return created;
+  }
+
+  private void mineCommit(GitRepository repository, String commitId) {
+    mineWhenIdle(repository, () -> {
+      try {
+        mine(repository, Collections.singletonList(commitId), 1, new EmptyProgressIndicator());
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    });
+  }
+
+  private void mineCommit(VcsCommitMetadata commit) {
+    Runnable mining =
+        () -> CommitMiner.mineAtCommit(commit, innerState.refactoringsMap.map, project);
+    GitRepository repository =
+        GitRepositoryManager.getInstance(project).getRepositoryForRoot(commit.getRoot());
+    if (repository != null) {
+      mineWhenIdle(repository, mining);
+    } else {
+      mining.run();
+    }
+  }
+
+  /**
+   * Runs a mining task on the calling thread once no other run mines the repository.
+   *
+   * @param repository GitRepository
+   * @param mining     the mining task
+   */
+  private void mineWhenIdle(GitRepository repository, Runnable mining) {
+    CompletableFuture<Void> turn = new CompletableFuture<>();
+    whenIdle(repository, () -> turn.complete(null));
+    turn.join();
+    try {
+      mining.run();
+    } finally {
+      finishMining(repository);
+    }
   }
 
   /**
@@ -165,16 +559,7 @@ public class MiningService implements PersistentStateComponent<MiningService.MyS
    * @param repository GitRepository
    */
   public void mineAndWait(GitRepository repository) {
-    synchronized (this) {
-      mineRepo(repository);
-      while (mining) {
-        try {
-          wait();
-        } catch (InterruptedException e) {
-          e.printStackTrace();
-        }
-      }
-    }
+    mineRepo(repository).join();
   }
 
   /**
@@ -185,50 +570,227 @@ public class MiningService implements PersistentStateComponent<MiningService.MyS
    * @param info    to be updated.
    */
   public void mineAtCommit(VcsCommitMetadata commit, Project project, GitWindow info) {
-    ProgressManager.getInstance()
-        .run(new Task.Backgroundable(project, String.format(
-            RefactoringsBundle.message("mining.at"), commit.getId().asString())) {
+    mineEntry(commit.getId().asString(), () -> mineCommit(commit))
+        .thenAccept(entry -> ApplicationManager.getApplication()
+            .invokeLater(() -> info.refresh(entry.getCommitId())));
+  }
 
-          @Override
-          public void onCancel() {
-            super.onCancel();
-          }
+  public MethodHistory getRefactoringHistory() {
+    return methodHistory;
+  }
 
-          public void onFinished() {
-            super.onFinished();
-            if (contains(commit.getId().asString())) {
-              System.out.println(RefactoringsBundle.message("finished"));
-              ApplicationManager.getApplication()
-                  .invokeLater(() -> info.refresh(commit.getId().asString()));
-            }
-          }
+  /**
+   * Switches the refactoring history to the given HEAD.
+   * The histories of the last HEADs are kept, so checking out a recent branch
+   * restores its history without replaying it.
+   * Kept histories are dropped once one of their commits is stored again.
+   *
+   * @param commitId the current HEAD
+   * @param project  the current project
+   */
+  private void computeRefactoringHistory(@NotNull String commitId, Project project) {
+    synchronized (historyLock) {
+      histories.values().removeIf(kept -> !isCurrent(kept));
+      MethodHistory history = histories.get(commitId);
+      if (history == null) {
+        final SettingsState settingsState = SettingsState.getInstance(project);
+        int limit = settingsState != null ? settingsState.historyLimit : Integer.MAX_VALUE / 100;
+        history = buildRefactoringHistory(commitId, limit, histories);
+        histories.put(commitId, history);
+      }
+      methodHistory = history;
+      innerState.historyHeads = new ArrayList<>(histories.keySet());
+    }
+  }
+
+  /**
+   * Checks that no commit of a history was stored after it was built.
+   * This includes its boundary, which is stored once an interrupted run mines it.
+   *
+   * @param history the history to check
+   * @return true iff the history can be reused
+   */
+  private boolean isCurrent(MethodHistory history) {
+    if (history.getGeneration() < resetGeneration) {
+      return false;
+    }
+    String current = history.getHead();
+    for (int i = 0; i < history.getLength(); i++) {
+      RefactoringEntry entry = get(current);
+      if (entry == null || storedGenerations.getOrDefault(current, 0L) > history.getGeneration()) {
+        return false;
+      }
+      current = entry.getParent();
+    }
+    return current == null
+        || storedGenerations.getOrDefault(current, 0L) <= history.getGeneration();
+  }
+
+  /**
+   * Builds the refactoring history for a HEAD.
+   * If HEAD is a first-parent descendant of a kept history,
+   * only the new commits are applied forward to a copy of it.
+   * Otherwise, or when forward updates made it twice as long as the history limit,
+   * the history is replayed from scratch.
+   *
+   * @param commitId the HEAD to build the history for
+   * @param limit    number of commits to replay
+   * @param bases    histories that can be continued
+   * @return the history
+   */
+  private MethodHistory buildRefactoringHistory(String commitId, int limit,
+                                                Map<String, MethodHistory> bases) {
+    long start = System.nanoTime();
+    long built = generation.get();
+    List<RefactoringEntry> entries = new ArrayList<>();
+    String current = commitId;
+    while (contains(current) && !bases.containsKey(current) && entries.size() < limit) {
+      RefactoringEntry refactoringEntry = get(current);
+      assert refactoringEntry != null;
+      entries.add(refactoringEntry);
+      current = refactoringEntry.getParent();
+    }
+    MethodHistory base = bases.get(current);
+    boolean incremental = base != null && base.getLength() + entries.size() <= 2 * limit;
+    MethodHistory history;
+    if (incremental) {
+      history = base.copy();
+    } else {
+      //walk the rest of the history limit from where the forward walk stopped
+      while (contains(current) && entries.size() < limit) {
+        RefactoringEntry refactoringEntry = get(current);
+        entries.add(refactoringEntry);
+        current = refactoringEntry.getParent();
+      }
+      history = new MethodHistory();
+      history.setBoundary(current);
+    }
+    Collections.reverse(entries);
+    MethodHistory target = history;
+    entries.forEach(entry -> entry.getRefactorings()
+        .forEach(r -> r.addToHistory(target)));
+    history.advance(commitId, entries.size());
+    history.setGeneration(built);
+    LOG.info(String.format("Refactoring history %s at %s: %d commits applied in %d ms",
+        incremental ? "updated" : "replayed", commitId, entries.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    return history;
+  }
+
+  /**
+   * Extends the history of the current HEAD past its boundary.
+   * Mines the next chunk of first-parent commits behind the oldest commit of the history
+   * and replays the history including them.
+   * Only one extension runs at a time, after the runs already mining the repository.
+   *
+   * @param repository GitRepository
+   * @param chunk      number of commits to add
+   * @return true iff the history got longer
+   */
+  public CompletableFuture<Boolean> mineDeeper(GitRepository repository, int chunk) {
+    MethodHistory history = methodHistory;
+    String head = history.getHead();
+    String boundary = history.getBoundary();
+    if (head == null || boundary == null || !deepening.compareAndSet(false, true)) {
+      return CompletableFuture.completedFuture(false);
+    }
+    CompletableFuture<Boolean> result = new CompletableFuture<>();
+    whenIdle(repository, () -> ProgressManager.getInstance()
+        .run(new Task.Backgroundable(project, RefactoringsBundle.message("mining.deeper"), true) {
 
           public void run(@NotNull ProgressIndicator progressIndicator) {
-            CommitMiner.mineAtCommit(commit, innerState.refactoringsMap.map, project);
+            boolean extended = false;
+            try {
+              List<String> commits = Utils.getFirstParentHashes(repository, boundary, chunk);
+              mine(repository, commits, commits.size(), progressIndicator);
+              synchronized (historyLock) {
+                MethodHistory deeper = buildRefactoringHistory(head,
+                    history.getLength() + chunk, Collections.emptyMap());
+                extended = deeper.getLength() > history.getLength();
+                if (extended) {
+                  histories.put(head, deeper);
+                  if (methodHistory == history) {
+                    methodHistory = deeper;
+                  }
+                }
+              }
+            } catch (Exception exception) {
+              exception.printStackTrace();
+            } finally {
+              finishMining(repository);
+              deepening.set(false);
+              result.complete(extended);
+            }
           }
-        });
+        }));
+    return result;
   }
 
+  /**
+   * Builds the refactoring history of a single file.
+   * Walks only the commits that touched the file, following its renames,
+   * mines those that are not stored yet and replays them in order.
+   * The mined entries are kept in the shared store.
+   * Starts after the runs already mining the repository.
+   *
+   * @param repository GitRepository
+   * @param path       path of the file relative to the repository root
+   * @return the history of the file and of its members
+   */
+  public CompletableFuture<MethodHistory> mineFileHistory(GitRepository repository,
+                                                          String path) {
+    CompletableFuture<MethodHistory> result = new CompletableFuture<>();
+    whenIdle(repository, () -> ProgressManager.getInstance().run(new Task.Backgroundable(project,
+        String.format(RefactoringsBundle.message("mining.file"), path), true) {
 
-  public Map<String, Set<RefactoringInfo>> getRefactoringHistory() {
-    return methodHistory;
+      public void run(@NotNull ProgressIndicator progressIndicator) {
+        MethodHistory history = new MethodHistory();
+        try {
+          List<String> commits = Utils.getFileHashes(repository, path, FILE_HISTORY_LIMIT);
+          mine(repository, commits, commits.size(), progressIndicator);
+          Collections.reverse(commits);
+          commits.stream()
+              .map(MiningService.this::get)
+              .filter(Objects::nonNull)
+              .forEach(entry -> entry.getRefactorings().forEach(r -> r.addToHistory(history)));
+        } catch (Exception exception) {
+          exception.printStackTrace();
+        } finally {
+          finishMining(repository);
+          result.complete(history);
+        }
+      }
+    }));
+    return result;
   }
 
-  private void computeRefactoringHistory(@NotNull String commitId, Project project) {
-    List<RefactoringInfo> refs = new ArrayList<>();
-    final SettingsState settingsState = SettingsState.getInstance(project);
-    int limit = settingsState != null ? settingsState.historyLimit : Integer.MAX_VALUE / 100;
-    while (contains(commitId) && limit-- > 0) {
-      RefactoringEntry refactoringEntry = get(commitId);
-      assert refactoringEntry != null;
-      refs.addAll(refactoringEntry.getRefactorings());
-      commitId = refactoringEntry.getParent();
+  /**
+   * Rebuilds the histories of the last HEADs after a restart,
+   * from the least to the most recently used one.
+   * Heads whose history was computed in the meantime are skipped,
+   * and the current history is only set if no run has set it yet.
+   */
+  private void restoreRefactoringHistories() {
+    MethodHistory initial = methodHistory;
+    List<String> heads = new ArrayList<>(innerState.historyHeads);
+    for (String head : heads) {
+      synchronized (historyLock) {
+        histories.values().removeIf(kept -> !isCurrent(kept));
+        if (contains(head) && !histories.containsKey(head)) {
+          final SettingsState settingsState = SettingsState.getInstance(project);
+          int limit = settingsState != null ? settingsState.historyLimit : Integer.MAX_VALUE / 100;
+          histories.put(head, buildRefactoringHistory(head, limit, histories));
+        }
+      }
     }
-    Collections.reverse(refs);
-    methodHistory.clear();
-    refs.forEach(r -> r.addToHistory(methodHistory));
-    synchronized (this) {
-      notifyAll();
+    synchronized (historyLock) {
+      if (methodHistory == initial && !heads.isEmpty()) {
+        MethodHistory last = histories.get(heads.get(heads.size() - 1));
+        if (last != null) {
+          methodHistory = last;
+        }
+      }
+      innerState.historyHeads = new ArrayList<>(histories.keySet());
     }
   }
 
@@ -241,12 +803,22 @@ public class MiningService implements PersistentStateComponent<MiningService.MyS
   }
 
   public void clear() {
+    resetGeneration = generation.incrementAndGet();
     innerState.refactoringsMap.map.clear();
+    storedGenerations.clear();
+    RefactoringIndex.getInstance(project).clear();
+    SearchIndex.getInstance(project).clear();
+    synchronized (historyLock) {
+      histories.clear();
+      innerState.historyHeads.clear();
+      methodHistory = new MethodHistory();
+    }
   }
 
   public static class MyState {
     @OptionTag(converter = RefactoringsMapConverter.class)
     public RefactoringsMap refactoringsMap = new RefactoringsMap();
+    public List<String> historyHeads = new ArrayList<>();
   }
 
 }
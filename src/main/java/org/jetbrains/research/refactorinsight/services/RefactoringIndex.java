@@ -0,0 +1,279 @@
+package org.jetbrains.research.refactorinsight.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.refactorinsight.data.Group;
+import org.jetbrains.research.refactorinsight.data.MethodHistory;
+import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
+import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
+
+/**
+ * Inverted index of the mined refactorings.
+ * Maps file paths, class names and member signatures to the commits that refactored them
+ * and the positions of those refactorings in the commit's entry.
+ * Members use the keys of the refactoring history: methods as owner.name(params)
+ * and attributes as owner|name. Members are also indexed under their owning class.
+ * It is not persisted, it is built from the stored entries on the first query
+ * and updated as entries are stored.
+ * Each commit is indexed with a stamp of its entry, so that entries replaced
+ * while the index was not listening, e.g. by loading another state, are indexed again.
+ * Postings are computed outside of the index lock, the lock only guards merging them.
+ */
+@Service
+public class RefactoringIndex implements Disposable {
+
+  private final Project project;
+  private final Map<String, Map<String, List<Integer>>> postings = new HashMap<>();
+  private final Map<String, Set<String>> termsByCommit = new HashMap<>();
+  private final Map<String, String> stamps = new HashMap<>();
+  private final AtomicLong storeVersion = new AtomicLong(1);
+  private volatile long syncedVersion = 0;
+
+  /**
+   * Constructor for the refactoring index of a project.
+   * Indexes each entry as soon as it is stored.
+   *
+   * @param project the current project
+   */
+  public RefactoringIndex(@NotNull Project project) {
+    this.project = project;
+    project.getMessageBus().connect(this).subscribe(RefactoringsListener.TOPIC, this::add);
+  }
+
+  public static RefactoringIndex getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, RefactoringIndex.class);
+  }
+
+  /**
+   * Computes the terms a refactoring is indexed under.
+   *
+   * @param info refactoring
+   * @return paths, class names and member keys touched by the refactoring
+   */
+  public static Set<String> termsOf(RefactoringInfo info) {
+    Set<String> terms = new LinkedHashSet<>();
+    terms.add(info.getLeftPath());
+    terms.add(info.getMidPath());
+    terms.add(info.getRightPath());
+    if (info.getGroup() == Group.METHOD) {
+      addMember(terms, info.getNameBefore());
+      addMember(terms, info.getNameAfter());
+    } else if (info.getGroup() == Group.ATTRIBUTE) {
+      addMember(terms, info.getDetailsBefore() + "|" + info.getNameBefore());
+      addMember(terms, info.getDetailsAfter() + "|" + info.getNameAfter());
+    } else if (info.getGroup() != Group.VARIABLE) {
+      terms.add(info.getNameBefore());
+      terms.add(info.getNameAfter());
+    }
+    terms.remove(null);
+    terms.remove("");
+    return terms;
+  }
+
+  /**
+   * Computes the stamp of an entry, it changes when the commit is mined again differently.
+   *
+   * @param entry stored entry
+   * @return the stamp
+   */
+  static String stampOf(RefactoringEntry entry) {
+    return entry.getTimeStamp() + "/" + entry.getScope() + "/" + entry.getRefactorings().size();
+  }
+
+  private static void addMember(Set<String> terms, String key) {
+    if (key != null) {
+      terms.add(key);
+      terms.add(MethodHistory.ownerOf(key));
+    }
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  /**
+   * Indexes the refactorings of an entry, replacing what was indexed for its commit.
+   *
+   * @param entry stored entry
+   */
+  public void add(@NotNull RefactoringEntry entry) {
+    CommitPostings indexed = new CommitPostings(entry);
+    synchronized (this) {
+      put(indexed);
+    }
+  }
+
+  private void put(CommitPostings indexed) {
+    remove(indexed.commitId);
+    indexed.positions.forEach((term, positions) ->
+        postings.computeIfAbsent(term, t -> new HashMap<>()).put(indexed.commitId, positions));
+    termsByCommit.put(indexed.commitId, indexed.positions.keySet());
+    stamps.put(indexed.commitId, indexed.stamp);
+  }
+
+  /**
+   * Removes a commit from the index.
+   *
+   * @param commitId of the commit
+   */
+  public synchronized void remove(String commitId) {
+    stamps.remove(commitId);
+    Set<String> terms = termsByCommit.remove(commitId);
+    if (terms == null) {
+      return;
+    }
+    for (String term : terms) {
+      Map<String, List<Integer>> commits = postings.get(term);
+      if (commits != null) {
+        commits.remove(commitId);
+        if (commits.isEmpty()) {
+          postings.remove(term);
+        }
+      }
+    }
+  }
+
+  /**
+   * Empties the index, together with the store.
+   */
+  public synchronized void clear() {
+    storeVersion.incrementAndGet();
+    postings.clear();
+    termsByCommit.clear();
+    stamps.clear();
+  }
+
+  /**
+   * Checks the index against the store again on the next query,
+   * after the stored entries were replaced.
+   */
+  public void resync() {
+    storeVersion.incrementAndGet();
+  }
+
+  /**
+   * Gets the commits that refactored a file, a class or a member.
+   *
+   * @param term path, qualified class name or member key
+   * @return the commit ids
+   */
+  public Set<String> getCommits(String term) {
+    sync();
+    synchronized (this) {
+      return new HashSet<>(postings.getOrDefault(term, Collections.emptyMap()).keySet());
+    }
+  }
+
+  /**
+   * Gets the refactorings of a file, a class or a member, by commit.
+   *
+   * @param term path, qualified class name or member key
+   * @return the positions of the refactorings in the entry of each commit
+   */
+  public Map<String, List<Integer>> getPositions(String term) {
+    sync();
+    Map<String, List<Integer>> positions = new HashMap<>();
+    synchronized (this) {
+      postings.getOrDefault(term, Collections.emptyMap())
+          .forEach((commitId, list) -> positions.put(commitId, new ArrayList<>(list)));
+    }
+    return positions;
+  }
+
+  /**
+   * Gets the refactorings of a file, a class or a member from the store.
+   *
+   * @param term path, qualified class name or member key
+   * @return the refactorings
+   */
+  public List<RefactoringInfo> getRefactorings(String term) {
+    MiningService miner = MiningService.getInstance(project);
+    List<RefactoringInfo> refactorings = new ArrayList<>();
+    getPositions(term).forEach((commitId, positions) -> {
+      RefactoringEntry entry = miner.get(commitId);
+      if (entry != null) {
+        positions.stream()
+            .filter(position -> position < entry.getRefactorings().size())
+            .forEach(position -> refactorings.add(entry.getRefactorings().get(position)));
+      }
+    });
+    return refactorings;
+  }
+
+  /**
+   * Brings the index in line with the store on the first query after it was replaced.
+   * Commits that are no longer stored are removed, and commits whose entry
+   * does not match the stamp they were indexed with are indexed again.
+   * The store is read and the postings are computed before taking the lock,
+   * commits indexed in the meantime are left as they are.
+   */
+  private void sync() {
+    long version = storeVersion.get();
+    if (syncedVersion == version) {
+      return;
+    }
+    List<RefactoringEntry> stored = new ArrayList<>(
+        MiningService.getInstance(project).getState().refactoringsMap.map.values());
+    Map<String, String> indexed;
+    synchronized (this) {
+      indexed = new HashMap<>(stamps);
+    }
+    Set<String> storedCommits = stored.stream()
+        .map(RefactoringEntry::getCommitId)
+        .collect(Collectors.toSet());
+    List<CommitPostings> stale = stored.stream()
+        .filter(entry -> !stampOf(entry).equals(indexed.get(entry.getCommitId())))
+        .map(CommitPostings::new)
+        .collect(Collectors.toList());
+    synchronized (this) {
+      if (storeVersion.get() != version) {
+        return;
+      }
+      indexed.forEach((commitId, stamp) -> {
+        if (!storedCommits.contains(commitId) && stamp.equals(stamps.get(commitId))) {
+          remove(commitId);
+        }
+      });
+      for (CommitPostings commit : stale) {
+        if (Objects.equals(indexed.get(commit.commitId), stamps.get(commit.commitId))) {
+          put(commit);
+        }
+      }
+      syncedVersion = version;
+    }
+  }
+
+  /**
+   * The terms of the refactorings of one commit, with their positions in its entry.
+   */
+  private static class CommitPostings {
+    private final String commitId;
+    private final String stamp;
+    private final Map<String, List<Integer>> positions = new HashMap<>();
+
+    CommitPostings(RefactoringEntry entry) {
+      commitId = entry.getCommitId();
+      stamp = stampOf(entry);
+      List<RefactoringInfo> refactorings = entry.getRefactorings();
+      for (int position = 0; position < refactorings.size(); position++) {
+        for (String term : termsOf(refactorings.get(position))) {
+          positions.computeIfAbsent(term, t -> new ArrayList<>()).add(position);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package org.jetbrains.research.refactorinsight.services;
+
+import com.intellij.util.messages.Topic;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
+
+/**
+ * Listener for the refactoring entries stored by the {@link MiningService}.
+ * Subscribe to the project message bus to get the results of a mining run as they come in.
+ * Entries are published from the mining threads.
+ */
+public interface RefactoringsListener {
+  Topic<RefactoringsListener> TOPIC =
+      Topic.create("RefactorInsight refactorings", RefactoringsListener.class);
+
+  /**
+   * Called after the entry of a commit is stored.
+   *
+   * @param entry the stored entry
+   */
+  void entryStored(@NotNull RefactoringEntry entry);
+}
@@ -0,0 +1,621 @@
+package org.jetbrains.research.refactorinsight.services;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import git4idea.repo.GitRepository;
+import git4idea.repo.GitRepositoryManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.refactorinsight.data.Group;
+import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
+import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
+import org.jetbrains.research.refactorinsight.utils.Utils;
+import org.refactoringminer.api.RefactoringType;
+
+/**
+ * Columnar in-memory index of all mined refactorings, used by the refactoring search.
+ * Each visible refactoring is a row of primitive columns: commit, position in the entry,
+ * type and group ordinals, commit timestamp and dictionary ids of its paths and names.
+ * Substring filters are evaluated once per dictionary value, so a search only
+ * compares ints while scanning the rows.
+ * Rows are appended as entries are stored. Searches read the columns without locking,
+ * they see every row below the row count they read. The rows of an entry that is stored
+ * again are marked deleted, and the columns are compacted once most rows are deleted.
+ * Authors are read with JGit and kept as a snapshot of author ids by commit.
+ */
+@Service
+public class SearchIndex implements Disposable {
+
+  private static final int INITIAL_ROWS = 1024;
+  private final Project project;
+  private final Object syncLock = new Object();
+  private final Object authorLock = new Object();
+  private final AtomicLong storeVersion = new AtomicLong(1);
+  private volatile long syncedVersion = 0;
+  private volatile Columns columns = new Columns(INITIAL_ROWS, INITIAL_ROWS);
+  private volatile Authors authors = Authors.EMPTY;
+  private List<RefactoringEntry> storedDuringSync;
+
+  /**
+   * Constructor for the search index of a project.
+   * Adds each entry as soon as it is stored.
+   *
+   * @param project the current project
+   */
+  public SearchIndex(@NotNull Project project) {
+    this.project = project;
+    project.getMessageBus().connect(this).subscribe(RefactoringsListener.TOPIC, this::add);
+  }
+
+  public static SearchIndex getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, SearchIndex.class);
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  /**
+   * Searches the mined refactorings.
+   *
+   * @param query filters of the search
+   * @param limit maximum number of matches returned
+   * @return the newest matches and the total number of matches
+   */
+  public Result search(Query query, int limit) {
+    sync();
+    Columns table = columns;
+    int rows = table.rows;
+
+    BitSet matchingPaths = null;
+    BitSet matchingNames = null;
+    if (query.text != null && !query.text.isEmpty()) {
+      String text = query.text.toLowerCase();
+      matchingPaths = table.paths.matching(text);
+      matchingNames = table.names.matching(text);
+    }
+    Authors known = null;
+    BitSet matchingAuthors = null;
+    byte[] commitsByAuthor = null;
+    if (query.author != null && !query.author.isEmpty()) {
+      known = resolveAuthors(Arrays.stream(table.commitIds)
+          .filter(Objects::nonNull)
+          .collect(Collectors.toList()));
+      matchingAuthors = known.matching(query.author.toLowerCase());
+      commitsByAuthor = new byte[table.commitIds.length];
+    }
+    int type = query.type == null ? -1 : query.type.ordinal();
+    int group = query.group == null ? -1 : query.group.ordinal();
+
+    Comparator<Integer> byTime = Comparator.comparingLong(row -> table.rowTimes[row]);
+    PriorityQueue<Integer> newest = new PriorityQueue<>(byTime);
+    int total = 0;
+    for (int row = 0; row < rows; row++) {
+      if (table.deleted[row]
+          || type >= 0 && table.rowTypes[row] != type
+          || group >= 0 && table.rowGroups[row] != group
+          || table.rowTimes[row] < query.from || table.rowTimes[row] > query.to) {
+        continue;
+      }
+      if (matchingPaths != null
+          && !has(matchingPaths, table.rowLeftPaths[row])
+          && !has(matchingPaths, table.rowRightPaths[row])
+          && !has(matchingNames, table.rowNamesBefore[row])
+          && !has(matchingNames, table.rowNamesAfter[row])) {
+        continue;
+      }
+      if (commitsByAuthor != null) {
+        int commit = table.rowCommits[row];
+        if (commitsByAuthor[commit] == 0) {
+          commitsByAuthor[commit] =
+              has(matchingAuthors, known.idOf(table.commitIds[commit])) ? (byte) 1 : (byte) 2;
+        }
+        if (commitsByAuthor[commit] != 1) {
+          continue;
+        }
+      }
+      total++;
+      newest.add(row);
+      if (newest.size() > limit) {
+        newest.poll();
+      }
+    }
+
+    if (known == null) {
+      known = resolveAuthors(newest.stream()
+          .map(row -> table.commitIds[table.rowCommits[row]])
+          .collect(Collectors.toSet()));
+    }
+    List<Match> matches = new ArrayList<>();
+    for (int row : newest) {
+      String commitId = table.commitIds[table.rowCommits[row]];
+      matches.add(new Match(commitId, table.rowPositions[row], table.rowTimes[row],
+          known.nameOf(commitId)));
+    }
+    matches.sort(Comparator.comparingLong(Match::getTimestamp).reversed()
+        .thenComparingInt(Match::getPosition));
+    return new Result(total, matches);
+  }
+
+  /**
+   * Drops all rows and authors, together with the store.
+   */
+  public void clear() {
+    synchronized (this) {
+      storeVersion.incrementAndGet();
+      columns = new Columns(INITIAL_ROWS, INITIAL_ROWS);
+    }
+    synchronized (authorLock) {
+      authors = Authors.EMPTY;
+    }
+  }
+
+  /**
+   * Builds the rows again from the store on the next search,
+   * after the stored entries were replaced.
+   */
+  public void resync() {
+    storeVersion.incrementAndGet();
+  }
+
+  private static boolean has(BitSet ids, int id) {
+    return id >= 0 && ids.get(id);
+  }
+
+  private synchronized void add(RefactoringEntry entry) {
+    if (storedDuringSync != null) {
+      storedDuringSync.add(entry);
+    }
+    columns = columns.add(entry);
+  }
+
+  /**
+   * Builds the rows from the store on the first search after it was replaced.
+   * The rows are built without blocking the mining threads,
+   * entries stored in the meantime are added to them before they are published.
+   */
+  private void sync() {
+    if (syncedVersion == storeVersion.get()) {
+      return;
+    }
+    synchronized (syncLock) {
+      long version = storeVersion.get();
+      if (syncedVersion == version) {
+        return;
+      }
+      synchronized (this) {
+        storedDuringSync = new ArrayList<>();
+      }
+      Columns built = new Columns(INITIAL_ROWS, INITIAL_ROWS);
+      for (RefactoringEntry entry : new ArrayList<>(
+          MiningService.getInstance(project).getState().refactoringsMap.map.values())) {
+        built = built.add(entry);
+      }
+      synchronized (this) {
+        List<RefactoringEntry> stored = storedDuringSync;
+        storedDuringSync = null;
+        if (storeVersion.get() != version) {
+          return;
+        }
+        for (RefactoringEntry entry : stored) {
+          built = built.add(entry);
+        }
+        columns = built;
+        syncedVersion = version;
+      }
+    }
+  }
+
+  /**
+   * Reads the authors of the commits that are not known yet with one JGit walk,
+   * then publishes the new snapshot of the authors.
+   *
+   * @param commitIds commits to get the authors of
+   * @return the snapshot of the authors
+   */
+  private Authors resolveAuthors(Collection<String> commitIds) {
+    Authors known = authors;
+    Set<String> pending = commitIds.stream()
+        .filter(commitId -> !known.idsByCommit.containsKey(commitId))
+        .collect(Collectors.toSet());
+    List<GitRepository> repositories =
+        GitRepositoryManager.getInstance(project).getRepositories();
+    if (pending.isEmpty() || repositories.isEmpty()) {
+      return known;
+    }
+    synchronized (authorLock) {
+      pending.removeIf(authors.idsByCommit::containsKey);
+      if (!pending.isEmpty()) {
+        try {
+          authors = authors.with(pending, Utils.getAuthors(repositories.get(0), pending));
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      }
+      return authors;
+    }
+  }
+
+  /**
+   * Encodes distinct lower case strings as consecutive ids.
+   * Values are only appended, so it can be read while it is written.
+   */
+  private static class Dictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] values = new String[INITIAL_ROWS];
+    private volatile int size = 0;
+
+    /**
+     * Gets the id of a value, adding it if it is new.
+     * Only called by the thread that holds the index lock.
+     *
+     * @param value to encode
+     * @return the id, -1 for null
+     */
+    private int encode(String value) {
+      if (value == null) {
+        return -1;
+      }
+      String lower = value.toLowerCase();
+      Integer id = ids.get(lower);
+      if (id == null) {
+        id = size;
+        if (id == values.length) {
+          values = Arrays.copyOf(values, id * 2);
+        }
+        values[id] = lower;
+        ids.put(lower, id);
+        size = id + 1;
+      }
+      return id;
+    }
+
+    private String decode(int id) {
+      return id < 0 ? null : values[id];
+    }
+
+    private BitSet matching(String text) {
+      int count = size;
+      String[] known = values;
+      BitSet matching = new BitSet(count);
+      for (int id = 0; id < count; id++) {
+        if (known[id].contains(text)) {
+          matching.set(id);
+        }
+      }
+      return matching;
+    }
+  }
+
+  /**
+   * One generation of the columns. Rows are appended in place while they fit,
+   * then the columns are copied into a larger generation.
+   * Everything below the row count is written before the count is.
+   */
+  private static class Columns {
+    private final Dictionary paths;
+    private final Dictionary names;
+    private final Map<String, Integer> commitOrdinals;
+    private final String[] commitIds;
+    private final int[] firstRows;
+    private final int[] rowCounts;
+    private final int[] rowCommits;
+    private final int[] rowPositions;
+    private final int[] rowTypes;
+    private final int[] rowGroups;
+    private final long[] rowTimes;
+    private final int[] rowLeftPaths;
+    private final int[] rowRightPaths;
+    private final int[] rowNamesBefore;
+    private final int[] rowNamesAfter;
+    private final boolean[] deleted;
+    private int commits = 0;
+    private int deletedRows = 0;
+    private volatile int rows = 0;
+
+    private Columns(int rowCapacity, int commitCapacity) {
+      this(new Dictionary(), new Dictionary(), new HashMap<>(), rowCapacity, commitCapacity);
+    }
+
+    private Columns(Dictionary paths, Dictionary names, Map<String, Integer> commitOrdinals,
+                    int rowCapacity, int commitCapacity) {
+      this.paths = paths;
+      this.names = names;
+      this.commitOrdinals = commitOrdinals;
+      commitIds = new String[commitCapacity];
+      firstRows = new int[commitCapacity];
+      rowCounts = new int[commitCapacity];
+      rowCommits = new int[rowCapacity];
+      rowPositions = new int[rowCapacity];
+      rowTypes = new int[rowCapacity];
+      rowGroups = new int[rowCapacity];
+      rowTimes = new long[rowCapacity];
+      rowLeftPaths = new int[rowCapacity];
+      rowRightPaths = new int[rowCapacity];
+      rowNamesBefore = new int[rowCapacity];
+      rowNamesAfter = new int[rowCapacity];
+      deleted = new boolean[rowCapacity];
+    }
+
+    /**
+     * Appends the refactorings of an entry as rows, hidden refactorings are left out.
+     * The rows of an entry that is stored again are marked deleted first,
+     * so a search never sees both.
+     *
+     * @param entry stored entry
+     * @return these columns, or the generation the rows were appended to
+     */
+    private Columns add(RefactoringEntry entry) {
+      List<RefactoringInfo> visible = entry.getRefactorings().stream()
+          .filter(info -> !info.isHidden())
+          .collect(Collectors.toList());
+      Integer known = commitOrdinals.get(entry.getCommitId());
+      Columns target = this;
+      if (known != null) {
+        deleted(known);
+        if (deletedRows >= INITIAL_ROWS && deletedRows * 2 > rows) {
+          target = compact((rows - deletedRows + visible.size()) * 2);
+        }
+      }
+      if (target.rows + visible.size() > target.rowCommits.length
+          || known == null && target.commits == target.commitIds.length) {
+        target = target.copy(Math.max(target.rows + visible.size(), target.rows * 2),
+            target.commitIds.length * 2);
+      }
+      target.append(entry, known, visible);
+      return target;
+    }
+
+    private void deleted(int commit) {
+      Arrays.fill(deleted, firstRows[commit], firstRows[commit] + rowCounts[commit], true);
+      deletedRows += rowCounts[commit];
+      rowCounts[commit] = 0;
+    }
+
+    private void append(RefactoringEntry entry, Integer known, List<RefactoringInfo> visible) {
+      int commit;
+      if (known == null) {
+        commit = commits++;
+        commitIds[commit] = entry.getCommitId();
+        commitOrdinals.put(entry.getCommitId(), commit);
+      } else {
+        commit = known;
+      }
+      int row = rows;
+      firstRows[commit] = row;
+      rowCounts[commit] = visible.size();
+      List<RefactoringInfo> refactorings = entry.getRefactorings();
+      for (int position = 0; position < refactorings.size(); position++) {
+        RefactoringInfo info = refactorings.get(position);
+        if (info.isHidden()) {
+          continue;
+        }
+        rowCommits[row] = commit;
+        rowPositions[row] = position;
+        rowTypes[row] = info.getType() == null ? -1 : info.getType().ordinal();
+        rowGroups[row] = info.getGroup() == null ? -1 : info.getGroup().ordinal();
+        rowTimes[row] = entry.getTimeStamp();
+        rowLeftPaths[row] = paths.encode(info.getLeftPath());
+        rowRightPaths[row] = paths.encode(info.getRightPath());
+        rowNamesBefore[row] = names.encode(info.getNameBefore());
+        rowNamesAfter[row] = names.encode(info.getNameAfter());
+        row++;
+      }
+      rows = row;
+    }
+
+    /**
+     * Copies the columns into a larger generation, sharing the dictionaries.
+     */
+    private Columns copy(int rowCapacity, int commitCapacity) {
+      Columns copy = new Columns(paths, names, commitOrdinals, rowCapacity, commitCapacity);
+      System.arraycopy(commitIds, 0, copy.commitIds, 0, commits);
+      System.arraycopy(firstRows, 0, copy.firstRows, 0, commits);
+      System.arraycopy(rowCounts, 0, copy.rowCounts, 0, commits);
+      System.arraycopy(rowCommits, 0, copy.rowCommits, 0, rows);
+      System.arraycopy(rowPositions, 0, copy.rowPositions, 0, rows);
+      System.arraycopy(rowTypes, 0, copy.rowTypes, 0, rows);
+      System.arraycopy(rowGroups, 0, copy.rowGroups, 0, rows);
+      System.arraycopy(rowTimes, 0, copy.rowTimes, 0, rows);
+      System.arraycopy(rowLeftPaths, 0, copy.rowLeftPaths, 0, rows);
+      System.arraycopy(rowRightPaths, 0, copy.rowRightPaths, 0, rows);
+      System.arraycopy(rowNamesBefore, 0, copy.rowNamesBefore, 0, rows);
+      System.arraycopy(rowNamesAfter, 0, copy.rowNamesAfter, 0, rows);
+      System.arraycopy(deleted, 0, copy.deleted, 0, rows);
+      copy.commits = commits;
+      copy.deletedRows = deletedRows;
+      copy.rows = rows;
+      return copy;
+    }
+
+    /**
+     * Copies the rows that are not deleted into a new generation,
+     * with dictionaries of the values those rows still use.
+     */
+    private Columns compact(int rowCapacity) {
+      Columns compact = new Columns(new Dictionary(), new Dictionary(), commitOrdinals,
+          Math.max(rowCapacity, INITIAL_ROWS), commitIds.length);
+      System.arraycopy(commitIds, 0, compact.commitIds, 0, commits);
+      compact.commits = commits;
+      int row = 0;
+      for (int commit = 0; commit < commits; commit++) {
+        compact.firstRows[commit] = row;
+        compact.rowCounts[commit] = rowCounts[commit];
+        for (int old = firstRows[commit]; old < firstRows[commit] + rowCounts[commit]; old++) {
+          compact.rowCommits[row] = commit;
+          compact.rowPositions[row] = rowPositions[old];
+          compact.rowTypes[row] = rowTypes[old];
+          compact.rowGroups[row] = rowGroups[old];
+          compact.rowTimes[row] = rowTimes[old];
+          compact.rowLeftPaths[row] = compact.paths.encode(paths.decode(rowLeftPaths[old]));
+          compact.rowRightPaths[row] = compact.paths.encode(paths.decode(rowRightPaths[old]));
+          compact.rowNamesBefore[row] = compact.names.encode(names.decode(rowNamesBefore[old]));
+          compact.rowNamesAfter[row] = compact.names.encode(names.decode(rowNamesAfter[old]));
+          row++;
+        }
+      }
+      compact.rows = row;
+      return compact;
+    }
+  }
+
+  /**
+   * Snapshot of the authors of the commits, as ids into the list of author names.
+   * Commits whose author could not be read map to -1.
+   */
+  private static class Authors {
+    private static final Authors EMPTY =
+        new Authors(Collections.emptyMap(), Collections.emptyList());
+    private final Map<String, Integer> idsByCommit;
+    private final List<String> names;
+
+    private Authors(Map<String, Integer> idsByCommit, List<String> names) {
+      this.idsByCommit = idsByCommit;
+      this.names = names;
+    }
+
+    /**
+     * Adds the authors of more commits.
+     *
+     * @param commitIds commits that were looked up
+     * @param found     the author names that were found, by commit
+     * @return the new snapshot
+     */
+    private Authors with(Collection<String> commitIds, Map<String, String> found) {
+      Map<String, Integer> ids = new HashMap<>(idsByCommit);
+      List<String> allNames = new ArrayList<>(names);
+      Map<String, Integer> nameIds = new HashMap<>();
+      for (int id = 0; id < allNames.size(); id++) {
+        nameIds.put(allNames.get(id), id);
+      }
+      for (String commitId : commitIds) {
+        String name = found.get(commitId);
+        ids.put(commitId, name == null ? -1 : nameIds.computeIfAbsent(name, n -> {
+          allNames.add(n);
+          return allNames.size() - 1;
+        }));
+      }
+      return new Authors(ids, allNames);
+    }
+
+    private int idOf(String commitId) {
+      return idsByCommit.getOrDefault(commitId, -1);
+    }
+
+    private String nameOf(String commitId) {
+      int id = idOf(commitId);
+      return id < 0 ? "" : names.get(id);
+    }
+
+    private BitSet matching(String text) {
+      BitSet matching = new BitSet(names.size());
+      for (int id = 0; id < names.size(); id++) {
+        if (names.get(id).toLowerCase().contains(text)) {
+          matching.set(id);
+        }
+      }
+      return matching;
+    }
+  }
+
+  /**
+   * Filters of a search. Null or empty filters match every refactoring.
+   */
+  public static class Query {
+    private final String text;
+    private final RefactoringType type;
+    private final Group group;
+    private final String author;
+    private final long from;
+    private final long to;
+
+    /**
+     * Constructor for a search query.
+     *
+     * @param text   substring of a path or of a class or member name
+     * @param type   refactoring type
+     * @param group  refactoring group
+     * @param author substring of the author name
+     * @param from   earliest commit timestamp in milliseconds
+     * @param to     latest commit timestamp in milliseconds
+     */
+    public Query(String text, RefactoringType type, Group group, String author,
+                 long from, long to) {
+      this.text = text;
+      this.type = type;
+      this.group = group;
+      this.author = author;
+      this.from = from;
+      this.to = to;
+    }
+  }
+
+  /**
+   * A refactoring found by a search, by its position in the entry of its commit.
+   */
+  public static class Match {
+    private final String commitId;
+    private final int position;
+    private final long timestamp;
+    private final String author;
+
+    Match(String commitId, int position, long timestamp, String author) {
+      this.commitId = commitId;
+      this.position = position;
+      this.timestamp = timestamp;
+      this.author = author;
+    }
+
+    public String getCommitId() {
+      return commitId;
+    }
+
+    public int getPosition() {
+      return position;
+    }
+
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public String getAuthor() {
+      return author;
+    }
+  }
+
+  /**
+   * Newest matches of a search and the number of all matches.
+   */
+  public static class Result {
+    private final int total;
+    private final List<Match> matches;
+
+    Result(int total, List<Match> matches) {
+      this.total = total;
+      this.matches = matches;
+    }
+
+    public int getTotal() {
+      return total;
+    }
+
+    public List<Match> getMatches() {
+      return matches;
+    }
+  }
+}
@@ -45,7 +45,12 @@ public class SettingsConfigurable implements Configurable {
     SettingsState settings = SettingsState.getInstance(project);
     return !(mySettingsComponent.getCommitLimit() == settings.commitLimit
         && mySettingsComponent.getHistoryLimit() == settings.historyLimit
-        && mySettingsComponent.getThreads() == settings.threads);
+        && mySettingsComponent.getMinThreads() == settings.minThreads
+        && mySettingsComponent.getThreads() == settings.threads
+        && mySettingsComponent.getReuseModels() == settings.reuseModels
+        && mySettingsComponent.getParseCacheSize() == settings.parseCacheSize
+        && mySettingsComponent.getIncludePaths().equals(settings.includePaths)
+        && mySettingsComponent.getExcludePaths().equals(settings.excludePaths));
   }
 
   @Override
@@ -53,7 +58,12 @@ public class SettingsConfigurable implements Configurable {
     SettingsState settings = SettingsState.getInstance(project);
     settings.commitLimit = mySettingsComponent.getCommitLimit();
     settings.historyLimit = mySettingsComponent.getHistoryLimit();
+    settings.minThreads = mySettingsComponent.getMinThreads();
     settings.threads = mySettingsComponent.getThreads();
+    settings.reuseModels = mySettingsComponent.getReuseModels();
+    settings.parseCacheSize = mySettingsComponent.getParseCacheSize();
+    settings.includePaths = mySettingsComponent.getIncludePaths();
+    settings.excludePaths = mySettingsComponent.getExcludePaths();
     List<GitRepository> repositories = GitRepositoryManager
         .getInstance(project).getRepositories();
     if (repositories.isEmpty()) {
@@ -67,7 +77,12 @@ public class SettingsConfigurable implements Configurable {
     SettingsState settings = SettingsState.getInstance(project);
     mySettingsComponent.setCommitLimit(settings.commitLimit);
     mySettingsComponent.setHistoryLimit(settings.historyLimit);
+    mySettingsComponent.setMinThreads(settings.minThreads);
     mySettingsComponent.setThreads(settings.threads);
+    mySettingsComponent.setReuseModels(settings.reuseModels);
+    mySettingsComponent.setParseCacheSize(settings.parseCacheSize);
+    mySettingsComponent.setIncludePaths(settings.includePaths);
+    mySettingsComponent.setExcludePaths(settings.excludePaths);
   }
 
   @Override
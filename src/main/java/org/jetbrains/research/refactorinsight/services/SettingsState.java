@@ -22,7 +22,12 @@ public class SettingsState implements PersistentStateComponent<SettingsState> {
 
   public int commitLimit = 100;
   public int historyLimit = 100;
+  public int minThreads = 1;
   public int threads = 8;
+  public boolean reuseModels = true;
+  public int parseCacheSize = 512;
+  public String includePaths = "";
+  public String excludePaths = "";
 
   public static SettingsState getInstance(Project project) {
     return ServiceManager.getService(project, SettingsState.class);
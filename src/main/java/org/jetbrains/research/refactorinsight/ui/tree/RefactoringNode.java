@@ -0,0 +1,56 @@
+package org.jetbrains.research.refactorinsight.ui.tree;
+
+import java.util.Enumeration;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
+import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
+
+/**
+ * Tree node of a refactoring that creates its details, name and element nodes
+ * the first time its children are asked for, e.g. when it is expanded.
+ * It is never a leaf, every refactoring node has at least a name node.
+ */
+public class RefactoringNode extends DefaultMutableTreeNode {
+
+  private boolean loaded = false;
+
+  public RefactoringNode(RefactoringInfo info) {
+    super(info);
+  }
+
+  private void load() {
+    if (!loaded) {
+      loaded = true;
+      TreeUtils.addNodes(this, (RefactoringInfo) getUserObject());
+    }
+  }
+
+  @Override
+  public boolean isLeaf() {
+    return false;
+  }
+
+  @Override
+  public int getChildCount() {
+    load();
+    return super.getChildCount();
+  }
+
+  @Override
+  public TreeNode getChildAt(int index) {
+    load();
+    return super.getChildAt(index);
+  }
+
+  @Override
+  public int getIndex(TreeNode node) {
+    load();
+    return super.getIndex(node);
+  }
+
+  @Override
+  public Enumeration<TreeNode> children() {
+    load();
+    return super.children();
+  }
+}
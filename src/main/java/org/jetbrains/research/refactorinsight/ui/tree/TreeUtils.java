@@ -3,10 +3,14 @@ package org.jetbrains.research.refactorinsight.ui.tree;
 import com.intellij.ui.treeStructure.Tree;
 import java.util.List;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
 import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
 import org.jetbrains.research.refactorinsight.utils.StringUtils;
 
 public class TreeUtils {
+  private static final int EXPAND_LIMIT = 200;
+
   /**
    * Method for create a presentable String out of the
    * element changes for a refactoring.
@@ -54,7 +58,17 @@ public class TreeUtils {
    */
   public static DefaultMutableTreeNode makeNode(RefactoringInfo info) {
     DefaultMutableTreeNode node = new DefaultMutableTreeNode(info);
+    addNodes(node, info);
+    return node;
+  }
 
+  /**
+   * Adds the details, name and element nodes of a refactoring.
+   *
+   * @param node to add the nodes to.
+   * @param info refactoring info.
+   */
+  static void addNodes(DefaultMutableTreeNode node, RefactoringInfo info) {
     DefaultMutableTreeNode detailsNode = makeDetailsNode(info);
     DefaultMutableTreeNode nameNode = makeNameNode(info);
     DefaultMutableTreeNode leaf = makeLeafNode(info);
@@ -67,7 +81,6 @@ public class TreeUtils {
     } else {
       node.add(nameNode);
     }
-    return node;
   }
 
   /**
@@ -168,16 +181,38 @@ public class TreeUtils {
    * @return Swing Tree visualisation of refactorings in this entry.
    */
   public static Tree buildTree(List<RefactoringInfo> refactorings) {
+    Tree tree = new Tree(buildTreeModel(refactorings));
+    tree.setRootVisible(false);
+    expandSmallTree(tree);
+    return tree;
+  }
+
+  /**
+   * Builds the model of a UI tree.
+   * The nodes under each refactoring are only created when it is expanded.
+   *
+   * @return tree model of refactorings in this entry.
+   */
+  public static DefaultTreeModel buildTreeModel(List<RefactoringInfo> refactorings) {
     DefaultMutableTreeNode root =
         new DefaultMutableTreeNode(refactorings.isEmpty() ? "" : refactorings.get(0).getCommitId());
     refactorings.forEach(r -> {
       if (!r.isHidden()) {
-        root.add(makeNode(r));
+        root.add(new RefactoringNode(r));
       }
     });
-    Tree tree = new Tree(root);
-    tree.setRootVisible(false);
-    expandAllNodes(tree, 0, tree.getRowCount());
-    return tree;
+    return new DefaultTreeModel(root);
+  }
+
+  /**
+   * Expands all nodes of a tree with few refactorings.
+   * Larger trees stay collapsed, so their nodes are only created when expanded.
+   *
+   * @param tree to be expanded.
+   */
+  public static void expandSmallTree(Tree tree) {
+    if (((TreeNode) tree.getModel().getRoot()).getChildCount() <= EXPAND_LIMIT) {
+      expandAllNodes(tree, 0, tree.getRowCount());
+    }
   }
 }
@@ -0,0 +1,68 @@
+package org.jetbrains.research.refactorinsight.ui.windows;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePath;
+import com.intellij.openapi.vcs.ProjectLevelVcsManager;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Revisions of the files changed by a commit, indexed by their path relative to the
+ * repository root, as the paths of the refactorings are.
+ * Built once per diff window and shared by all the requests of its chain.
+ */
+public class ChangeIndex {
+
+  private final Map<String, ContentRevision> before = new HashMap<>();
+  private final Map<String, ContentRevision> after = new HashMap<>();
+
+  /**
+   * Constructor for a change index.
+   *
+   * @param changes of the commit
+   * @param project context project
+   */
+  public ChangeIndex(Collection<Change> changes, Project project) {
+    ProjectLevelVcsManager vcsManager = ProjectLevelVcsManager.getInstance(project);
+    for (Change change : changes) {
+      add(before, change.getBeforeRevision(), vcsManager);
+      add(after, change.getAfterRevision(), vcsManager);
+    }
+  }
+
+  private static void add(Map<String, ContentRevision> revisions, ContentRevision revision,
+                          ProjectLevelVcsManager vcsManager) {
+    if (revision == null) {
+      return;
+    }
+    FilePath file = revision.getFile();
+    VirtualFile root = vcsManager.getVcsRootFor(file);
+    String path = root == null ? null
+        : FileUtil.getRelativePath(root.getPath(), file.getPath(), '/');
+    revisions.put(path == null ? file.getPath() : path, revision);
+  }
+
+  /**
+   * Gets the revision of a file before or after the commit.
+   *
+   * @param path  relative to the repository root
+   * @param after true for the revision after the commit, false for the one before
+   * @return the revision, null if the commit did not change the file
+   */
+  public ContentRevision get(String path, boolean after) {
+    return after ? getAfter(path) : getBefore(path);
+  }
+
+  public ContentRevision getBefore(String path) {
+    return before.get(path);
+  }
+
+  public ContentRevision getAfter(String path) {
+    return after.get(path);
+  }
+}
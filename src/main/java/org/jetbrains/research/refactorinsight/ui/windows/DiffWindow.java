@@ -3,12 +3,13 @@ package org.jetbrains.research.refactorinsight.ui.windows;
 import com.intellij.diff.DiffContentFactoryEx;
 import com.intellij.diff.DiffContext;
 import com.intellij.diff.DiffDialogHints;
-import com.intellij.diff.DiffManager;
 import com.intellij.diff.FrameDiffTool;
 import com.intellij.diff.chains.DiffRequestChain;
-import com.intellij.diff.chains.SimpleDiffRequestChain;
+import com.intellij.diff.chains.DiffRequestProducer;
+import com.intellij.diff.chains.DiffRequestProducerException;
 import com.intellij.diff.contents.DiffContent;
 import com.intellij.diff.contents.DocumentContent;
+import com.intellij.diff.impl.DiffRequestProcessor;
 import com.intellij.diff.requests.DiffRequest;
 import com.intellij.diff.tools.simple.SimpleDiffViewer;
 import com.intellij.diff.tools.simple.SimpleThreesideDiffChange;
@@ -18,33 +19,56 @@ import com.intellij.diff.tools.util.base.DiffViewerListener;
 import com.intellij.ide.highlighter.JavaClassFileType;
 import com.intellij.ide.highlighter.JavaFileType;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.colors.EditorColorsManager;
 import com.intellij.openapi.editor.colors.EditorColorsScheme;
+import com.intellij.openapi.editor.colors.EditorFontType;
 import com.intellij.openapi.editor.colors.TextAttributesKey;
 import com.intellij.openapi.editor.impl.EditorImpl;
 import com.intellij.openapi.editor.markup.HighlighterTargetArea;
 import com.intellij.openapi.editor.markup.TextAttributes;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.TitlePanel;
 import com.intellij.openapi.ui.WindowWrapper;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.UserDataHolder;
+import com.intellij.openapi.util.UserDataHolderBase;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.components.JBList;
 import com.intellij.ui.components.JBScrollPane;
+import git4idea.GitCommit;
+import git4idea.history.GitHistoryUtils;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.ListCellRenderer;
@@ -53,6 +77,7 @@ import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
 import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
 import org.jetbrains.research.refactorinsight.data.diff.MoreSidedDiffRequestGenerator.MoreSidedRange;
 import org.jetbrains.research.refactorinsight.data.diff.ThreeSidedRange;
+import org.jetbrains.research.refactorinsight.services.RefactoringsBundle;
 
 /**
  * Deals with refactoring diff requests.
@@ -72,6 +97,9 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
 
   /**
    * Requests diff window to show specific refactoring with two editors.
+   * The window opens right away, the contents of each refactoring are loaded
+   * in the background when it is shown and the loading is canceled if the window is closed.
+   * The chain is disposed with the window, which cancels its prefetching.
    *
    * @param info    RefactoringInfo
    * @param project Current project
@@ -80,22 +108,59 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
                               Project project, RefactoringEntry entry) {
     final Predicate<RefactoringInfo> showable =
         i -> !i.isHidden() && i.getLeftPath() != null;
-    List<DiffRequest> requests = entry.getRefactorings().stream()
+    List<RefactoringInfo> infos = entry.getRefactorings().stream()
         .filter(showable)
-        .map(i -> i.generate(getDiffContents(changes, i, project)))
         .collect(Collectors.toList());
-    DiffRequestChain chain = new SimpleDiffRequestChain(requests);
-    final int index = entry.getRefactorings().stream()
-        .filter(showable).collect(Collectors.toList()).indexOf(info);
+    final int index = infos.indexOf(info);
     if (index != -1) {
-      chain.setIndex(index);
-      DiffManager.getInstance().showDiff(project, chain,
-          new DiffDialogHints(WindowWrapper.Mode.FRAME));
+      RefactoringRequestChain chain = new RefactoringRequestChain(changes, infos, project, index);
+      new com.intellij.diff.impl.DiffWindow(project, chain,
+          new DiffDialogHints(WindowWrapper.Mode.FRAME)) {
+        @NotNull
+        @Override
+        protected DiffRequestProcessor createProcessor() {
+          DiffRequestProcessor processor = super.createProcessor();
+          Disposer.register(processor, chain);
+          return processor;
+        }
+      }.show();
     }
   }
 
+  /**
+   * Loads the changes of the commit of a refactoring in the background,
+   * then shows its diff.
+   *
+   * @param root    root of the repository of the commit
+   * @param info    RefactoringInfo
+   * @param project Current project
+   * @param entry   of the commit
+   */
+  public static void showDiff(VirtualFile root, RefactoringInfo info,
+                              Project project, RefactoringEntry entry) {
+    String commitId = entry.getCommitId();
+    ProgressManager.getInstance().run(new Task.Backgroundable(project,
+        String.format(RefactoringsBundle.message("changes.loading"),
+            commitId.substring(0, 8)), true) {
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        try {
+          List<GitCommit> commits =
+              GitHistoryUtils.history(project, root, "--no-walk", commitId);
+          if (commits.isEmpty()) {
+            return;
+          }
+          Collection<Change> changes = new ArrayList<>(commits.get(0).getChanges(0));
+          ApplicationManager.getApplication().invokeLater(
+              () -> showDiff(changes, info, project, entry), project.getDisposed());
+        } catch (VcsException e) {
+          e.printStackTrace();
+        }
+      }
+    });
+  }
 
-  private static DiffContent[] getDiffContents(Collection<Change> changes,
+  private static DiffContent[] getDiffContents(ChangeIndex changes,
                                                RefactoringInfo info, Project project) {
     if (info.getLeftPath() == null || info.getRightPath() == null) {
       return null;
@@ -107,30 +172,21 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
   /**
    * This method is for "More Sided" refactoring diff.
    */
-  private static DiffContent[] getMoreSidedDiffContents(Collection<Change> changes,
+  private static DiffContent[] getMoreSidedDiffContents(ChangeIndex changes,
                                                         RefactoringInfo info, Project project) {
     try {
       DiffContentFactoryEx myDiffContentFactory = DiffContentFactoryEx.getInstanceEx();
       ArrayList<DiffContent> contentList = new ArrayList<>();
-      for (Change change : changes) {
-        if (change.getAfterRevision() != null
-            && change.getAfterRevision().getFile().getPath().contains(info.getRightPath())) {
-          contentList.add(myDiffContentFactory
-              .create(project, change.getAfterRevision().getContent(),
-                  JavaClassFileType.INSTANCE));
-          break;
-        }
+      ContentRevision right = changes.getAfter(info.getRightPath());
+      if (right != null) {
+        contentList.add(myDiffContentFactory
+            .create(project, right.getContent(), JavaClassFileType.INSTANCE));
       }
       for (Pair<String, Boolean> pathPair : info.getMoreSidedLeftPaths()) {
-        for (Change change : changes) {
-          ContentRevision revision = pathPair.second
-              ? change.getAfterRevision() : change.getBeforeRevision();
-          if (revision != null && revision.getFile().getPath().contains(pathPair.first)) {
-            contentList.add(myDiffContentFactory
-                .create(project, revision.getContent(),
-                    JavaClassFileType.INSTANCE));
-            break;
-          }
+        ContentRevision revision = changes.get(pathPair.first, pathPair.second);
+        if (revision != null) {
+          contentList.add(myDiffContentFactory
+              .create(project, revision.getContent(), JavaClassFileType.INSTANCE));
         }
       }
       return contentList.toArray(new DiffContent[contentList.size()]);
@@ -143,32 +199,25 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
   /**
    * This is contents getter is for standard two or three sided refactoring diff.
    */
-  private static DiffContent[] getStandardDiffContents(Collection<Change> changes,
+  private static DiffContent[] getStandardDiffContents(ChangeIndex changes,
                                                        RefactoringInfo info, Project project) {
     try {
       DiffContentFactoryEx myDiffContentFactory = DiffContentFactoryEx.getInstanceEx();
       DiffContent[] contents = {null, null, null};
-      for (Change change : changes) {
-        if (change.getBeforeRevision() != null) {
-          if (change.getBeforeRevision().getFile().getPath().contains(info.getLeftPath())) {
-            contents[0] = myDiffContentFactory.create(project,
-                change.getBeforeRevision().getContent(),
-                JavaClassFileType.INSTANCE);
-          }
-        }
-        if (info.isThreeSided()
-            && change.getAfterRevision() != null
-            && change.getAfterRevision().getFile().getPath().contains(info.getMidPath())) {
-          contents[1] = myDiffContentFactory.create(project,
-              change.getAfterRevision().getContent(),
-              JavaClassFileType.INSTANCE);
-        }
-        if (change.getAfterRevision() != null
-            && change.getAfterRevision().getFile().getPath().contains(info.getRightPath())) {
-          contents[2] = myDiffContentFactory.create(project,
-              change.getAfterRevision().getContent(),
-              JavaClassFileType.INSTANCE);
-        }
+      ContentRevision left = changes.getBefore(info.getLeftPath());
+      if (left != null) {
+        contents[0] = myDiffContentFactory.create(project, left.getContent(),
+            JavaClassFileType.INSTANCE);
+      }
+      ContentRevision mid = info.isThreeSided() ? changes.getAfter(info.getMidPath()) : null;
+      if (mid != null) {
+        contents[1] = myDiffContentFactory.create(project, mid.getContent(),
+            JavaClassFileType.INSTANCE);
+      }
+      ContentRevision right = changes.getAfter(info.getRightPath());
+      if (right != null) {
+        contents[2] = myDiffContentFactory.create(project, right.getContent(),
+            JavaClassFileType.INSTANCE);
       }
       return contents;
 
@@ -247,7 +296,7 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
       //Generate Left Side UI
       JBList<Pair<MoreSidedRange, Project>> editorList =
           new JBList<>(JBList.createDefaultListModel(pairs));
-      MoreSidedRenderer renderer = new MoreSidedRenderer(editorList.getItemsCount());
+      MoreSidedRenderer renderer = new MoreSidedRenderer(pairs);
       Disposer.register(myViewer, renderer);
       editorList.setCellRenderer(renderer);
       JPanel leftPanel = (JPanel) myViewer.getEditor1().getComponent();
@@ -260,18 +309,200 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
     myViewer.getTextSettings().setExpandByDefault(false);
   }
 
+  /**
+   * Chain of the refactorings of a commit, starting at the selected one.
+   * Requests are only generated for the refactoring shown and its neighbours,
+   * and the last few generated requests are kept so navigating back does not load them again.
+   */
+  public static class RefactoringRequestChain extends UserDataHolderBase
+      implements DiffRequestChain, Disposable {
+
+    private static final int CACHED_REQUESTS = 8;
+
+    private final Collection<Change> changes;
+    private final List<RefactoringInfo> infos;
+    private final Project project;
+    private final List<RefactoringRequestProducer> producers;
+    private ChangeIndex changeIndex;
+    private final Map<Integer, DiffRequest> requests =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, DiffRequest> eldest) {
+            return size() > CACHED_REQUESTS;
+          }
+        };
+    private final Set<Integer> prefetching = ConcurrentHashMap.newKeySet();
+    private final ProgressIndicator prefetchIndicator = new EmptyProgressIndicator();
+    private int index;
+
+    /**
+     * Constructor for a refactoring request chain.
+     *
+     * @param changes of the commit
+     * @param infos   refactorings to show
+     * @param project context project
+     * @param index   of the selected refactoring
+     */
+    public RefactoringRequestChain(Collection<Change> changes, List<RefactoringInfo> infos,
+                                   Project project, int index) {
+      this.changes = changes;
+      this.infos = infos;
+      this.project = project;
+      this.index = index;
+      producers = IntStream.range(0, infos.size())
+          .mapToObj(RefactoringRequestProducer::new)
+          .collect(Collectors.toList());
+    }
+
+    /**
+     * Cancels the prefetching and drops the cached requests once the window is closed.
+     */
+    @Override
+    public void dispose() {
+      prefetchIndicator.cancel();
+      synchronized (requests) {
+        requests.clear();
+      }
+    }
+
+    @NotNull
+    @Override
+    public List<? extends DiffRequestProducer> getRequests() {
+      return producers;
+    }
+
+    @Override
+    public int getIndex() {
+      return index;
+    }
+
+    @Override
+    public void setIndex(int index) {
+      this.index = index;
+    }
+
+    private synchronized ChangeIndex getChangeIndex() {
+      if (changeIndex == null) {
+        changeIndex = new ChangeIndex(changes, project);
+      }
+      return changeIndex;
+    }
+
+    /**
+     * Gets the request of a refactoring from the cache, or generates it.
+     *
+     * @param i         index of the refactoring
+     * @param indicator to cancel loading
+     * @return the diff request
+     * @throws DiffRequestProducerException if the contents could not be loaded
+     */
+    private DiffRequest getRequest(int i, ProgressIndicator indicator)
+        throws DiffRequestProducerException {
+      synchronized (requests) {
+        DiffRequest request = requests.get(i);
+        if (request != null) {
+          return request;
+        }
+      }
+      indicator.checkCanceled();
+      RefactoringInfo info = infos.get(i);
+      DiffContent[] contents = getDiffContents(getChangeIndex(), info, project);
+      if (contents == null) {
+        throw new DiffRequestProducerException("Cannot load contents of " + info.getName());
+      }
+      indicator.checkCanceled();
+      DiffRequest request = info.generate(contents);
+      synchronized (requests) {
+        requests.put(i, request);
+      }
+      return request;
+    }
+
+    /**
+     * Generates the requests of the neighbours of a refactoring in the background,
+     * until the window is closed.
+     *
+     * @param i index of the refactoring shown
+     */
+    private void prefetch(int i) {
+      for (int neighbour : new int[] {i - 1, i + 1}) {
+        if (neighbour < 0 || neighbour >= infos.size() || prefetchIndicator.isCanceled()
+            || !prefetching.add(neighbour)) {
+          continue;
+        }
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+          try {
+            getRequest(neighbour, prefetchIndicator);
+          } catch (DiffRequestProducerException e) {
+            e.printStackTrace();
+          } catch (ProcessCanceledException e) {
+            //the window was closed
+          } finally {
+            prefetching.remove(neighbour);
+          }
+        });
+      }
+    }
+
+    /**
+     * Produces the request of one refactoring of the chain.
+     * The diff window calls it on a background thread with a cancelable indicator.
+     */
+    private class RefactoringRequestProducer implements DiffRequestProducer {
+
+      private final int i;
+
+      private RefactoringRequestProducer(int i) {
+        this.i = i;
+      }
+
+      @NotNull
+      @Override
+      public String getName() {
+        return infos.get(i).getName();
+      }
+
+      @NotNull
+      @Override
+      public DiffRequest process(@NotNull UserDataHolder context,
+                                 @NotNull ProgressIndicator indicator)
+          throws DiffRequestProducerException, ProcessCanceledException {
+        DiffRequest request = getRequest(i, indicator);
+        prefetch(i);
+        return request;
+      }
+    }
+  }
+
   /**
    * Renders the editors and title rows in the left side of diff window.
+   * Only the visible rows get an editor, the others are laid out with an empty
+   * row of the same height. Editors are kept in a pool the size of the visible rows:
+   * when a row scrolls in, the editor of a row that scrolled out is bound to it
+   * by copying the document and setting the highlighting of the row.
    */
   public static class MoreSidedRenderer implements Disposable,
       ListCellRenderer<Pair<MoreSidedRange, Project>> {
 
-    TitlePanel[] titles;
-    Editor[] editors;
+    private static final int EXTRA_EDITORS = 2;
+    private static final int WIDTH = 400;
 
-    public MoreSidedRenderer(int size) {
-      titles = new TitlePanel[size];
-      editors = new Editor[size];
+    private final List<Pair<MoreSidedRange, Project>> pairs;
+    private final TitlePanel[] titles;
+    private final Map<Integer, Editor> editors = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Editor, Document> boundDocuments = new HashMap<>();
+    private final JPanel placeholder = new JPanel();
+    private int[] offsets;
+    private int lineHeight = -1;
+
+    /**
+     * Constructor for a more sided renderer.
+     *
+     * @param pairs rows of the list, title rows have no project
+     */
+    public MoreSidedRenderer(List<Pair<MoreSidedRange, Project>> pairs) {
+      this.pairs = pairs;
+      titles = new TitlePanel[pairs.size()];
     }
 
     @Override
@@ -281,31 +512,117 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
         boolean b1) {
       //is title panel
       if (pair.second == null) {
-        if (titles[i] == null) {
-          titles[i] = new TitlePanel(pair.first.leftPath, null);
-        }
-        return titles[i];
-      } else if (editors[i] == null) {
-        generateEditor(i, pair);
+        return getTitle(i);
+      }
+      if (!isVisible(jlist, i)) {
+        placeholder.setPreferredSize(new Dimension(WIDTH, getHeight(i)));
+        return placeholder;
+      }
+      Editor editor = editors.get(i);
+      if (editor == null) {
+        editor = takeEditor(jlist, pair.second);
+        bindEditor(editor, i, pair);
+        editors.put(i, editor);
+      }
+      editor.getScrollingModel().scrollVertically(
+          Math.max(pair.first.startLineLeft - 2, 0) * editor.getLineHeight());
+      return editor.getComponent();
+    }
+
+    private TitlePanel getTitle(int i) {
+      if (titles[i] == null) {
+        titles[i] = new TitlePanel(pairs.get(i).first.leftPath, null);
+      }
+      return titles[i];
+    }
+
+    private int getLineHeight() {
+      if (lineHeight < 0) {
+        EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
+        FontMetrics metrics = placeholder.getFontMetrics(scheme.getFont(EditorFontType.PLAIN));
+        lineHeight = (int) Math.ceil(metrics.getHeight() * scheme.getLineSpacing());
+      }
+      return lineHeight;
+    }
+
+    /**
+     * Computes the height of a row without creating its editor.
+     *
+     * @param i index of the row
+     * @return the height of the title or of the editor fitting the code range
+     */
+    private int getHeight(int i) {
+      Pair<MoreSidedRange, Project> pair = pairs.get(i);
+      if (pair.second == null) {
+        return getTitle(i).getPreferredSize().height;
       }
-      editors[i].getScrollingModel().scrollVertically(
-          Math.max(pair.first.startLineLeft - 2, 0) * editors[i].getLineHeight());
-      return editors[i].getComponent();
+      return getLineHeight()
+          * (pair.first.endLineLeft - Math.max(pair.first.startLineLeft - 1, 1) + 2);
+    }
 
+    /**
+     * Checks if a row intersects the visible part of the list.
+     * The positions of the rows are computed from their heights,
+     * so that the list layout is not asked while it is being computed.
+     */
+    private boolean isVisible(JList<?> jlist, int i) {
+      if (offsets == null) {
+        offsets = new int[pairs.size() + 1];
+        for (int row = 0; row < pairs.size(); row++) {
+          offsets[row + 1] = offsets[row] + getHeight(row);
+        }
+      }
+      Rectangle visible = jlist.getVisibleRect();
+      return offsets[i + 1] > visible.y && offsets[i] < visible.y + visible.height;
     }
 
     /**
-     * Generate Editor UI for left side of diffwindow.
+     * Takes the least recently shown editor of a hidden row, if the pool is full.
+     * Otherwise creates a new editor.
      *
-     * @param i    Index of row in left side
-     * @param pair RangeData and Project
+     * @param jlist   the list of rows
+     * @param project context project
+     * @return an editor to bind to a row
      */
-    public void generateEditor(int i, Pair<MoreSidedRange, Project> pair) {
+    private Editor takeEditor(JList<?> jlist, Project project) {
+      long visibleRows = IntStream.range(0, pairs.size())
+          .filter(row -> pairs.get(row).second != null && isVisible(jlist, row))
+          .count();
+      if (editors.size() >= visibleRows + EXTRA_EDITORS) {
+        Iterator<Map.Entry<Integer, Editor>> iterator = editors.entrySet().iterator();
+        while (iterator.hasNext()) {
+          Map.Entry<Integer, Editor> eldest = iterator.next();
+          if (!isVisible(jlist, eldest.getKey())) {
+            iterator.remove();
+            return eldest.getValue();
+          }
+        }
+      }
+      Editor editor = EditorFactory.getInstance().createEditor(
+          EditorFactory.getInstance().createDocument(""), project, JavaFileType.INSTANCE, true);
+      //  Hide caret line highlighting
+      editor.getSettings().setCaretRowShown(false);
+      //Hide scrollbar
+      ((EditorImpl) editor).getScrollPane().getVerticalScrollBar()
+          .setPreferredSize(new Dimension(0, 0));
+      return editor;
+    }
 
-      //Instantiate editor
-      DocumentContent content = (DocumentContent) pair.first.content;
-      Editor editor = EditorFactory.getInstance().createEditor(content.getDocument(),
-          pair.second, JavaFileType.INSTANCE, true);
+    /**
+     * Binds an editor of the pool to a row of the left side of diffwindow.
+     * Copies the document of the row if the editor shows another one,
+     * and highlights the code range of the row.
+     *
+     * @param editor from the pool
+     * @param i      Index of row in left side
+     * @param pair   RangeData and Project
+     */
+    private void bindEditor(Editor editor, int i, Pair<MoreSidedRange, Project> pair) {
+      Document document = ((DocumentContent) pair.first.content).getDocument();
+      if (boundDocuments.get(editor) != document) {
+        WriteAction.run(() -> editor.getDocument().setText(document.getImmutableCharSequence()));
+        boundDocuments.put(editor, document);
+      }
 
       //Get highlight colors corresponding with theme and revision
       EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
@@ -316,8 +633,7 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
           : scheme.getAttributes(TextAttributesKey.find("DIFF_DELETED"));
 
       //Highlighting process
-      //  Hide caret line highlighting
-      editor.getSettings().setCaretRowShown(false);
+      editor.getMarkupModel().removeAllHighlighters();
       //  Highlight lines
       for (int ind = pair.first.startLineLeft - 1; ind < pair.first.endLineLeft; ind++) {
         editor.getMarkupModel().addLineHighlighter(ind, 2, lineColor);
@@ -326,26 +642,15 @@ public class DiffWindow extends com.intellij.diff.DiffExtension {
       editor.getMarkupModel().addRangeHighlighter(pair.first.startOffsetLeft,
           pair.first.endOffsetLeft, 10, offsetColor, HighlighterTargetArea.EXACT_RANGE);
 
-      //Set editor size to fit coderange
-      int editorSize = editor.getLineHeight()
-          * (pair.first.endLineLeft - Math.max(pair.first.startLineLeft - 1, 1) + 2);
-      editor.getComponent().setPreferredSize(new Dimension(400, editorSize));
-
-
-      //Hide scrollbar
-      ((EditorImpl) editor).getScrollPane().getVerticalScrollBar()
-          .setPreferredSize(new Dimension(0, 0));
-      editors[i] = editor;
+      //Set editor size to fit coderange, the same size as its placeholder
+      editor.getComponent().setPreferredSize(new Dimension(WIDTH, getHeight(i)));
     }
 
-
     @Override
     public void dispose() {
-      for (Editor editor : editors) {
-        if (editor != null) {
-          EditorFactory.getInstance().releaseEditor(editor);
-        }
-      }
+      editors.values().forEach(EditorFactory.getInstance()::releaseEditor);
+      editors.clear();
+      boundDocuments.clear();
     }
   }
 
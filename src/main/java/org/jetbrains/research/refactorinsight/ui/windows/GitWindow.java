@@ -1,6 +1,8 @@
 package org.jetbrains.research.refactorinsight.ui.windows;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vcs.changes.ui.ChangesTree;
 import com.intellij.ui.components.JBList;
 import com.intellij.ui.components.JBViewport;
@@ -11,21 +13,28 @@ import com.intellij.vcs.log.ui.MainVcsLogUi;
 import com.intellij.vcs.log.ui.table.VcsLogGraphTable;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
 import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
 import org.jetbrains.research.refactorinsight.services.MiningService;
+import org.jetbrains.research.refactorinsight.services.RefactoringsListener;
 import org.jetbrains.research.refactorinsight.ui.tree.TreeUtils;
 import org.jetbrains.research.refactorinsight.ui.tree.renderers.MainCellRenderer;
 
 /**
  * Is responsible for the additional ui elements in the git tool window.
  * Listens to mouse events to show refactorings at selected commit.
+ * Listens to the stored entries to show the selected commit as soon as it is mined.
  */
 public class GitWindow {
+  private static final int CACHED_MODELS = 50;
+
   private Project project;
 
   private ChangesTree changesTree;
@@ -33,6 +42,17 @@ public class GitWindow {
   private VcsLogGraphTable table;
   private MiningService miner;
   private boolean state = false;
+  private final Tree tree;
+  private final Map<String, Pair<RefactoringEntry, DefaultTreeModel>> models =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<String, Pair<RefactoringEntry, DefaultTreeModel>> eldest) {
+          return size() > CACHED_MODELS;
+        }
+      };
+  private RefactoringEntry entry;
+  private int index = -1;
 
   /**
    * Constructor for a GitWindowInfo.
@@ -47,6 +67,7 @@ public class GitWindow {
     viewport = (JBViewport) changesTree.getParent();
     table = vcsLogUi.getTable();
     miner = MiningService.getInstance(project);
+    tree = buildTree();
 
     table.getSelectionModel().addListSelectionListener(listSelectionEvent -> {
       if (!state || listSelectionEvent.getValueIsAdjusting()) {
@@ -54,6 +75,9 @@ public class GitWindow {
       }
       buildComponent();
     });
+    project.getMessageBus().connect(vcsLogUi).subscribe(RefactoringsListener.TOPIC,
+        entry -> ApplicationManager.getApplication()
+            .invokeLater(() -> refresh(entry.getCommitId())));
   }
 
   public boolean isSelected() {
@@ -75,12 +99,15 @@ public class GitWindow {
   }
 
   /**
-   * Method called after a single commit is mined.
-   * Updates the view with the refactorings found.
+   * Method called after a commit is mined.
+   * Updates the view with the refactorings found, if the commit is selected.
    *
    * @param commitId to refresh the view at.
    */
   public void refresh(String commitId) {
+    if (!state) {
+      return;
+    }
     int index = table.getSelectionModel().getAnchorSelectionIndex();
     if (index >= 0 && table.getModel().getCommitId(index).getHash().asString().equals(commitId)) {
       buildComponent();
@@ -102,13 +129,48 @@ public class GitWindow {
 
     RefactoringEntry entry = miner.get(commitId);
 
-    if (entry == null || miner.isMining()) {
-      miner.mineAtCommit(metadata, project, this);
+    if (entry == null) {
+      //the view is refreshed once the entry is stored
+      miner.entryFor(metadata);
       return;
     }
 
 
-    Tree tree = TreeUtils.buildTree(entry.getRefactorings());
+    this.entry = entry;
+    this.index = index;
+    tree.setModel(modelFor(commitId, entry));
+    TreeUtils.expandSmallTree(tree);
+    if (viewport.getView() != tree) {
+      viewport.setView(tree);
+    }
+  }
+
+  /**
+   * Gets the tree model of a commit from the cache.
+   * The model is only rebuilt if the entry of the commit was mined again.
+   *
+   * @param commitId of the entry
+   * @param entry    stored for the commit
+   * @return the tree model of the entry
+   */
+  private DefaultTreeModel modelFor(String commitId, RefactoringEntry entry) {
+    Pair<RefactoringEntry, DefaultTreeModel> cached = models.get(commitId);
+    if (cached == null || cached.first != entry) {
+      cached = Pair.create(entry, TreeUtils.buildTreeModel(entry.getRefactorings()));
+      models.put(commitId, cached);
+    }
+    return cached.second;
+  }
+
+  /**
+   * Builds the tree shared by all commits, only its model changes with the selection.
+   *
+   * @return the refactorings tree
+   */
+  private Tree buildTree() {
+    Tree tree = new Tree(new DefaultTreeModel(new DefaultMutableTreeNode("")));
+    tree.setRootVisible(false);
+    tree.setLargeModel(true);
     tree.setCellRenderer(new MainCellRenderer());
 
     tree.addMouseListener(new MouseAdapter() {
@@ -116,7 +178,7 @@ public class GitWindow {
       public void mouseClicked(MouseEvent ev) {
         if (ev.getClickCount() == 2) {
           TreePath path = tree.getPathForLocation(ev.getX(), ev.getY());
-          if (path == null) {
+          if (path == null || entry == null) {
             return;
           }
           DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
@@ -124,13 +186,13 @@ public class GitWindow {
             RefactoringInfo info = (RefactoringInfo)
                 node.getUserObjectPath()[1];
 
-            DiffWindow.showDiff(table.getModel().getFullDetails(index)
-                .getChanges(0), info, project, entry);
+            DiffWindow.showDiff(table.getModel().getCommitId(index).getRoot(),
+                info, project, entry);
           }
         }
       }
     });
-    viewport.setView(tree);
+    return tree;
   }
 
 }
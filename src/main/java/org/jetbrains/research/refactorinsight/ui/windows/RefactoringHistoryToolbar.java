@@ -5,6 +5,7 @@ import com.intellij.openapi.actionSystem.impl.ActionButton;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.popup.JBPopup;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowAnchor;
 import com.intellij.openapi.wm.ToolWindowManager;
@@ -31,10 +32,17 @@ import java.awt.GridLayout;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
@@ -51,10 +59,23 @@ import org.jetbrains.research.refactorinsight.utils.Utils;
 /**
  * Generates and holds the history toolbar.
  * Is invoked once one activates the history action.
+ * A single log tab is shared by all histories, filtered to the commits of the history shown.
+ * The contents of recently shown elements are kept and reused while their history is unchanged.
  */
 public class RefactoringHistoryToolbar {
 
+  private static final int CACHED_CONTENTS = 10;
+
   private final VcsLogManager.VcsLogUiFactory<? extends MainVcsLogUi> factory;
+  private final Map<String, Pair<List<Object>, JBSplitter>> contents =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<String, Pair<List<Object>, JBSplitter>> eldest) {
+          return size() > CACHED_CONTENTS;
+        }
+      };
+  private Set<String> filteredHashes;
 
   private MainVcsLogUi openLogTab;
   private ToolWindowManager toolWindowManager;
@@ -93,21 +114,48 @@ public class RefactoringHistoryToolbar {
     this.type = type;
     if (refactorings == null || refactorings.isEmpty()) {
       showPopup(datacontext);
-    } else {
-      JBSplitter splitter = new JBSplitter(false, (float) 0.35);
-      List<RefactoringInfo> refactoringInfos = new ArrayList<>(refactorings);
-      Utils.chronologicalOrder(refactoringInfos);
-
-      Tree tree =
-          createTree(refactoringInfos, methodsHistory, attributesHistory);
-      tree.setRootVisible(false);
-      //TreeUtils.expandAllNodes(tree, 0, tree.getRowCount());
-      tree.setCellRenderer(new HistoryToolbarRenderer());
-      addMouseListener(splitter, tree);
-      setFirstComponent(refactorings.size(), splitter, tree);
-      setSecondComponent(splitter);
-      showContent(objectsName, splitter);
+      return;
+    }
+    List<Object> key = Arrays.asList(type, new HashSet<>(refactorings),
+        snapshot(methodsHistory), snapshot(attributesHistory));
+    Pair<List<Object>, JBSplitter> cached = contents.get(objectsName);
+    if (cached != null && cached.first.equals(key)) {
+      setSecondComponent(cached.second);
+      showContent(objectsName, cached.second);
+      return;
+    }
+    JBSplitter splitter = new JBSplitter(false, (float) 0.35);
+    List<RefactoringInfo> refactoringInfos = new ArrayList<>(refactorings);
+    Utils.chronologicalOrder(refactoringInfos);
+
+    Set<String> hashes = refactorings.stream()
+        .map(RefactoringInfo::getCommitId).collect(Collectors.toSet());
+    Stream.of(methodsHistory, attributesHistory)
+        .filter(Objects::nonNull)
+        .flatMap(history -> history.values().stream())
+        .flatMap(Set::stream)
+        .forEach(info -> hashes.add(info.getCommitId()));
+
+    Tree tree =
+        createTree(refactoringInfos, methodsHistory, attributesHistory);
+    tree.setRootVisible(false);
+    //TreeUtils.expandAllNodes(tree, 0, tree.getRowCount());
+    tree.setCellRenderer(new HistoryToolbarRenderer());
+    addMouseListener(splitter, tree, hashes);
+    setFirstComponent(refactorings.size(), splitter, tree);
+    setSecondComponent(splitter);
+    contents.put(objectsName, Pair.create(key, splitter));
+    showContent(objectsName, splitter);
+  }
+
+  private static Map<String, Set<RefactoringInfo>> snapshot(
+      @Nullable Map<String, Set<RefactoringInfo>> history) {
+    if (history == null) {
+      return null;
     }
+    Map<String, Set<RefactoringInfo>> copy = new HashMap<>();
+    history.forEach((key, infos) -> copy.put(key, new HashSet<>(infos)));
+    return copy;
   }
 
   private void setSecondComponent(JBSplitter splitter) {
@@ -127,7 +175,7 @@ public class RefactoringHistoryToolbar {
     splitter.setFirstComponent(pane);
   }
 
-  private void addMouseListener(JBSplitter splitter, Tree tree) {
+  private void addMouseListener(JBSplitter splitter, Tree tree, Set<String> hashes) {
     tree.addMouseListener(new MouseAdapter() {
       @Override
       public void mouseClicked(MouseEvent e) {
@@ -143,24 +191,41 @@ public class RefactoringHistoryToolbar {
             if (info == null) {
               return;
             }
-            showLogTab(info, splitter);
+            showLogTab(info, splitter, hashes);
           }
         }
       }
     });
   }
 
-  private void showLogTab(RefactoringInfo info, JBSplitter splitter) {
-    VcsLogData data = VcsProjectLog.getInstance(project).getLogManager().getDataManager();
-
-    openLogTab = factory.createLogUi(project, data);
+  /**
+   * Shows the shared log tab next to a history, filtered to the commits of the history.
+   * The tab is created the first time, afterwards only its filter is updated.
+   *
+   * @param info     refactoring to jump to
+   * @param splitter of the history
+   * @param hashes   commits of the history
+   */
+  private void showLogTab(RefactoringInfo info, JBSplitter splitter, Set<String> hashes) {
+    boolean created = openLogTab == null;
+    if (created) {
+      VcsLogData data = VcsProjectLog.getInstance(project).getLogManager().getDataManager();
+      openLogTab = factory.createLogUi(project, data);
+      Utils.add(openLogTab);
+    }
+    if (!hashes.equals(filteredHashes)) {
+      filteredHashes = hashes;
+      openLogTab.getFilterUi().setFilter(VcsLogFilterObject.fromHashes(hashes));
+    }
 
-    Utils.add(openLogTab);
     JComponent mainComponent = openLogTab.getMainComponent();
     mainComponent.setAutoscrolls(true);
     mainComponent.setSize(splitter.getSecondComponent().getSize());
     splitter.setSecondComponent(mainComponent);
     openLogTab.jumpToHash(info.getCommitId());
+    if (!created) {
+      return;
+    }
 
     JBSplitter splitter1 = (JBSplitter) mainComponent.getComponent(0);
 
@@ -0,0 +1,212 @@
+package org.jetbrains.research.refactorinsight.ui.windows;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.ui.CollectionListModel;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.Gray;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.Alarm;
+import com.intellij.util.text.DateFormatUtil;
+import com.intellij.util.ui.FormBuilder;
+import git4idea.repo.GitRepository;
+import git4idea.repo.GitRepositoryManager;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import javax.swing.JComponent;
+import javax.swing.JList;
+import javax.swing.event.DocumentEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.research.refactorinsight.data.Group;
+import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
+import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
+import org.jetbrains.research.refactorinsight.services.MiningService;
+import org.jetbrains.research.refactorinsight.services.RefactoringsBundle;
+import org.jetbrains.research.refactorinsight.services.SearchIndex;
+import org.refactoringminer.api.RefactoringType;
+
+/**
+ * Generates and holds the refactoring search tool window.
+ * Filters all mined refactorings by type, group, author, date range and path or class,
+ * and lists the newest matches across commits.
+ * Searches run on a pooled thread shortly after the filters stop changing.
+ * Double clicking a match shows its diff.
+ */
+public class RefactoringSearchWindow implements Disposable {
+
+  private static final int LIMIT = 1000;
+  private static final int SEARCH_DELAY = 200;
+
+  private final Project project;
+  private final JBSplitter component = new JBSplitter(false, (float) 0.3);
+  private final JBTextField text = new JBTextField();
+  private final ComboBox<Object> type = new ComboBox<>();
+  private final ComboBox<Object> group = new ComboBox<>();
+  private final JBTextField author = new JBTextField();
+  private final JBTextField from = new JBTextField();
+  private final JBTextField to = new JBTextField();
+  private final CollectionListModel<SearchIndex.Match> model = new CollectionListModel<>();
+  private final JBList<SearchIndex.Match> results = new JBList<>(model);
+  private final JBLabel summary = new JBLabel();
+  private final Alarm searchAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+
+  /**
+   * Constructor for the search window.
+   *
+   * @param project current project
+   */
+  public RefactoringSearchWindow(Project project) {
+    this.project = project;
+    type.addItem(RefactoringsBundle.message("search.any"));
+    for (RefactoringType refactoringType : RefactoringType.values()) {
+      type.addItem(refactoringType);
+    }
+    group.addItem(RefactoringsBundle.message("search.any"));
+    for (Group refactoringGroup : Group.values()) {
+      group.addItem(refactoringGroup);
+    }
+
+    DocumentAdapter changed = new DocumentAdapter() {
+      @Override
+      protected void textChanged(@NotNull DocumentEvent e) {
+        scheduleSearch();
+      }
+    };
+    for (JBTextField field : new JBTextField[] {text, author, from, to}) {
+      field.getDocument().addDocumentListener(changed);
+    }
+    type.addActionListener(e -> scheduleSearch());
+    group.addActionListener(e -> scheduleSearch());
+
+    component.setFirstComponent(FormBuilder.createFormBuilder()
+        .addLabeledComponent(new JBLabel(RefactoringsBundle.message("label.search.text")), text,
+            1, false)
+        .addLabeledComponent(new JBLabel(RefactoringsBundle.message("label.search.type")), type,
+            1, false)
+        .addLabeledComponent(new JBLabel(RefactoringsBundle.message("label.search.group")), group,
+            1, false)
+        .addLabeledComponent(new JBLabel(RefactoringsBundle.message("label.search.author")),
+            author, 1, false)
+        .addLabeledComponent(new JBLabel(RefactoringsBundle.message("label.search.from")), from,
+            1, false)
+        .addLabeledComponent(new JBLabel(RefactoringsBundle.message("label.search.to")), to,
+            1, false)
+        .addComponentFillVertically(new JBLabel(), 0)
+        .getPanel());
+
+    results.setCellRenderer(new MatchRenderer());
+    results.addMouseListener(new MouseAdapter() {
+      @Override
+      public void mouseClicked(MouseEvent e) {
+        if (e.getClickCount() == 2) {
+          SearchIndex.Match match = results.getSelectedValue();
+          if (match != null) {
+            showDiff(match);
+          }
+        }
+      }
+    });
+    summary.setForeground(Gray._105);
+    JBScrollPane pane = new JBScrollPane(results);
+    pane.setColumnHeaderView(summary);
+    component.setSecondComponent(pane);
+    scheduleSearch();
+  }
+
+  public JComponent getComponent() {
+    return component;
+  }
+
+  /**
+   * Runs a search with the current filters once they stop changing.
+   */
+  private void scheduleSearch() {
+    SearchIndex.Query query = new SearchIndex.Query(text.getText().trim(),
+        type.getSelectedItem() instanceof RefactoringType
+            ? (RefactoringType) type.getSelectedItem() : null,
+        group.getSelectedItem() instanceof Group ? (Group) group.getSelectedItem() : null,
+        author.getText().trim(),
+        parseDate(from.getText(), 0, 0),
+        parseDate(to.getText(), 1, Long.MAX_VALUE) - 1);
+    searchAlarm.cancelAllRequests();
+    searchAlarm.addRequest(() -> {
+      SearchIndex.Result result = SearchIndex.getInstance(project).search(query, LIMIT);
+      ApplicationManager.getApplication().invokeLater(() -> {
+        model.replaceAll(result.getMatches());
+        summary.setText(String.format(RefactoringsBundle.message("search.results"),
+            result.getTotal(), result.getMatches().size()));
+      }, project.getDisposed());
+    }, SEARCH_DELAY);
+  }
+
+  /**
+   * Parses a date filter.
+   *
+   * @param date     in yyyy-MM-dd format
+   * @param days     days to add to the date
+   * @param fallback value for an empty or invalid date
+   * @return the start of the day in milliseconds
+   */
+  private static long parseDate(String date, int days, long fallback) {
+    try {
+      return LocalDate.parse(date.trim()).plusDays(days)
+          .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return fallback;
+    }
+  }
+
+  /**
+   * Loads the changes of the commit of a match in the background and shows its diff.
+   *
+   * @param match to show
+   */
+  private void showDiff(SearchIndex.Match match) {
+    RefactoringEntry entry = MiningService.getInstance(project).get(match.getCommitId());
+    List<GitRepository> repositories =
+        GitRepositoryManager.getInstance(project).getRepositories();
+    if (entry == null || repositories.isEmpty()
+        || match.getPosition() >= entry.getRefactorings().size()) {
+      return;
+    }
+    RefactoringInfo info = entry.getRefactorings().get(match.getPosition());
+    DiffWindow.showDiff(repositories.get(0).getRoot(), info, project, entry);
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  /**
+   * Renders a match as its date, author, refactoring and commit.
+   */
+  private class MatchRenderer extends ColoredListCellRenderer<SearchIndex.Match> {
+    @Override
+    protected void customizeCellRenderer(@NotNull JList<? extends SearchIndex.Match> list,
+                                         SearchIndex.Match match, int index, boolean selected,
+                                         boolean hasFocus) {
+      RefactoringEntry entry = MiningService.getInstance(project).get(match.getCommitId());
+      append(DateFormatUtil.formatDate(match.getTimestamp()) + "  ",
+          SimpleTextAttributes.GRAYED_ATTRIBUTES);
+      append(match.getAuthor() + "  ", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+      if (entry != null && match.getPosition() < entry.getRefactorings().size()) {
+        RefactoringInfo info = entry.getRefactorings().get(match.getPosition());
+        append(info.getName() + "  ", SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
+        append(info.getRightPath() == null ? "" : info.getRightPath() + "  ");
+      }
+      append(match.getCommitId().substring(0, 8), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+    }
+  }
+}
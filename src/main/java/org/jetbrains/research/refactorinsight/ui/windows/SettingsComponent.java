@@ -6,6 +6,8 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBTextField;
 import com.intellij.util.ui.FormBuilder;
 import git4idea.repo.GitRepository;
 import git4idea.repo.GitRepositoryManager;
@@ -27,8 +29,16 @@ public class SettingsComponent {
       new JBIntSpinner(100, 0, Integer.MAX_VALUE, 10);
   private final JBIntSpinner historyLimit =
       new JBIntSpinner(100, 0, Integer.MAX_VALUE, 10);
+  private final JBIntSpinner minThreads =
+      new JBIntSpinner(1, 1, Integer.MAX_VALUE, 1);
   private final JBIntSpinner threads =
       new JBIntSpinner(8, 0, Integer.MAX_VALUE, 1);
+  private final JBIntSpinner parseCacheSize =
+      new JBIntSpinner(512, 0, Integer.MAX_VALUE, 64);
+  private final JBTextField includePaths = new JBTextField();
+  private final JBTextField excludePaths = new JBTextField();
+  private final JBCheckBox reuseModels =
+      new JBCheckBox(RefactoringsBundle.message("label.reuse.models"), true);
 
   /**
    * SettingsComponent constructor. Creates the setting panel.
@@ -82,7 +92,16 @@ public class SettingsComponent {
         .addLabeledComponent(RefactoringsBundle.message("label.max.commits"), commitLimit, 1, false)
         .addLabeledComponent(RefactoringsBundle.message("label.max.history"), historyLimit, 1,
             false)
+        .addLabeledComponent(RefactoringsBundle.message("label.min.threads"), minThreads, 1,
+            false)
         .addLabeledComponent(RefactoringsBundle.message("label.threads"), threads, 1, false)
+        .addLabeledComponent(RefactoringsBundle.message("label.include.paths"), includePaths, 1,
+            false)
+        .addLabeledComponent(RefactoringsBundle.message("label.exclude.paths"), excludePaths, 1,
+            false)
+        .addComponent(reuseModels)
+        .addLabeledComponent(RefactoringsBundle.message("label.parse.cache"), parseCacheSize, 1,
+            false)
         .addComponent(clear)
         .addComponent(all)
         .addComponent(choose)
@@ -115,6 +134,14 @@ public class SettingsComponent {
     this.historyLimit.setNumber(limit);
   }
 
+  public int getMinThreads() {
+    return minThreads.getNumber();
+  }
+
+  public void setMinThreads(int n) {
+    this.minThreads.setNumber(n);
+  }
+
   public int getThreads() {
     return threads.getNumber();
   }
@@ -122,4 +149,36 @@ public class SettingsComponent {
   public void setThreads(int n) {
     this.threads.setNumber(n);
   }
+
+  public boolean getReuseModels() {
+    return reuseModels.isSelected();
+  }
+
+  public void setReuseModels(boolean reuse) {
+    this.reuseModels.setSelected(reuse);
+  }
+
+  public int getParseCacheSize() {
+    return parseCacheSize.getNumber();
+  }
+
+  public void setParseCacheSize(int size) {
+    this.parseCacheSize.setNumber(size);
+  }
+
+  public String getIncludePaths() {
+    return includePaths.getText();
+  }
+
+  public void setIncludePaths(String globs) {
+    this.includePaths.setText(globs);
+  }
+
+  public String getExcludePaths() {
+    return excludePaths.getText();
+  }
+
+  public void setExcludePaths(String globs) {
+    this.excludePaths.setText(globs);
+  }
 }
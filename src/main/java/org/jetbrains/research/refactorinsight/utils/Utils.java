@@ -14,6 +14,7 @@ import com.intellij.openapi.vcs.FilePath;
 import com.intellij.openapi.vcs.LocalFilePath;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import git4idea.GitContentRevision;
 import git4idea.GitRevisionNumber;
 import git4idea.repo.GitRepository;
@@ -25,19 +26,43 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.FollowFilter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
 import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
 import org.jetbrains.research.refactorinsight.data.RefactoringLine;
 import org.jetbrains.research.refactorinsight.services.RefactoringsBundle;
 import org.refactoringminer.api.RefactoringType;
+import org.refactoringminer.util.GitServiceImpl;
 
 public class Utils {
 
+  private static final int CONTENT_LOADERS = 4;
+  /**
+   * Loads file contents for all mining workers. The git calls block,
+   * so they do not run on the common pool, and are bounded so they do not flood git.
+   */
+  private static final ExecutorService contentLoader =
+      AppExecutorUtil.createBoundedApplicationPoolExecutor("RefactorInsight contents",
+          CONTENT_LOADERS);
   public static ToolWindowManager manager;
   /**
    * Used for storing and disposing the MainVcsLogs used for method history action.
@@ -209,54 +234,150 @@ public class Utils {
    * @return the corrected RefactoringInfo
    */
   public static RefactoringInfo check(RefactoringInfo info, Project project) {
+    return check(info, loadContents(getRevisions(info), project));
+  }
+
+  /**
+   * Checks and corrects the ranges of all refactorings of a commit.
+   * The file contents are loaded on the bounded content loader, which is shared by all
+   * mining workers, so the blocking git reads never take more than its threads.
+   * The ranges are then corrected as fork/join subtasks on the common pool.
+   * Related refactorings share their line markings, so they are corrected in order
+   * within the same subtask.
+   *
+   * @param infos   refactorings of a commit
+   * @param project the open project
+   */
+  public static void check(List<RefactoringInfo> infos, Project project) {
+    List<Pair<String, String>> revisions = infos.stream()
+        .flatMap(info -> getRevisions(info).stream())
+        .distinct()
+        .collect(Collectors.toList());
+    Map<Pair<String, String>, String> contents = loadContents(revisions, project);
+    sharingMarkings(infos).parallelStream()
+        .forEach(related -> related.forEach(info -> check(info, contents)));
+  }
+
+  /**
+   * Groups refactorings that share a line marking, keeping their order.
+   *
+   * @param infos refactorings of a commit
+   * @return the groups of related refactorings
+   */
+  public static Collection<List<RefactoringInfo>> sharingMarkings(List<RefactoringInfo> infos) {
+    int[] roots = new int[infos.size()];
+    Map<RefactoringLine, Integer> owners = new IdentityHashMap<>();
+    for (int i = 0; i < infos.size(); i++) {
+      roots[i] = i;
+      for (RefactoringLine line : infos.get(i).getLineMarkings()) {
+        Integer owner = owners.putIfAbsent(line, i);
+        if (owner != null) {
+          roots[rootOf(roots, i)] = rootOf(roots, owner);
+        }
+      }
+    }
+    Map<Integer, List<RefactoringInfo>> groups = new LinkedHashMap<>();
+    for (int i = 0; i < infos.size(); i++) {
+      groups.computeIfAbsent(rootOf(roots, i), root -> new ArrayList<>()).add(infos.get(i));
+    }
+    return groups.values();
+  }
+
+  private static int rootOf(int[] roots, int i) {
+    while (roots[i] != i) {
+      roots[i] = roots[roots[i]];
+      i = roots[i];
+    }
+    return i;
+  }
+
+  private static RefactoringInfo check(RefactoringInfo info,
+                                       Map<Pair<String, String>, String> contents) {
     //check for refactorings without line markings
     // such as move source folder or rename package
     if (info.getLeftPath() == null || info.getRightPath() == null) {
       return info;
     }
+    //a content could not be loaded
+    if (!contents.keySet().containsAll(getRevisions(info))) {
+      return info;
+    }
 
-    FilePath beforePath = new LocalFilePath(
-        project.getBasePath() + "/"
-            + info.getLeftPath(), false);
-    FilePath midPath = !info.isThreeSided() ? null : new LocalFilePath(
-        project.getBasePath() + "/"
-            + info.getMidPath(), false);
-    FilePath afterPath = new LocalFilePath(
-        project.getBasePath() + "/"
-            + info.getRightPath(), false);
-    GitRevisionNumber afterNumber = new GitRevisionNumber(info.getCommitId());
-    GitRevisionNumber beforeNumber = new GitRevisionNumber(info.getParent());
-
-
-    try {
-      String after = GitContentRevision
-          .createRevision(afterPath, afterNumber, project).getContent();
-
-      if (!info.isMoreSided()) {
-        String before = GitContentRevision
-            .createRevision(beforePath, beforeNumber, project).getContent();
-        String mid = !info.isThreeSided() ? null : GitContentRevision
-            .createRevision(midPath, afterNumber, project).getContent();
-
-        info.correctLines(before, mid, after);
-      } else {
-        List<String> befores = new ArrayList<>();
-        for (Pair<String, Boolean> pathPair : info.getMoreSidedLeftPaths()) {
-          GitRevisionNumber number = pathPair.second ? afterNumber : beforeNumber;
-          FilePath filePath =
-              new LocalFilePath(project.getBasePath() + "/" + pathPair.first, false);
-          befores.add(
-              GitContentRevision.createRevision(filePath, number, project).getContent());
-        }
-        info.correctMoreSidedLines(befores, after);
+    String after = contents.get(Pair.create(info.getRightPath(), info.getCommitId()));
+    if (!info.isMoreSided()) {
+      String before = contents.get(Pair.create(info.getLeftPath(), info.getParent()));
+      String mid = !info.isThreeSided() ? null
+          : contents.get(Pair.create(info.getMidPath(), info.getCommitId()));
+
+      info.correctLines(before, mid, after);
+    } else {
+      List<String> befores = new ArrayList<>();
+      for (Pair<String, Boolean> pathPair : info.getMoreSidedLeftPaths()) {
+        String revision = pathPair.second ? info.getCommitId() : info.getParent();
+        befores.add(contents.get(Pair.create(pathPair.first, revision)));
       }
-    } catch (VcsException e) {
-      e.printStackTrace();
+      info.correctMoreSidedLines(befores, after);
     }
-
     return info;
   }
 
+  /**
+   * Lists the file revisions needed to correct the ranges of a refactoring.
+   *
+   * @param info refactoring info
+   * @return pairs of path and commit id
+   */
+  private static List<Pair<String, String>> getRevisions(RefactoringInfo info) {
+    List<Pair<String, String>> revisions = new ArrayList<>();
+    if (info.getLeftPath() == null || info.getRightPath() == null) {
+      return revisions;
+    }
+    revisions.add(Pair.create(info.getRightPath(), info.getCommitId()));
+    if (!info.isMoreSided()) {
+      revisions.add(Pair.create(info.getLeftPath(), info.getParent()));
+      if (info.isThreeSided()) {
+        revisions.add(Pair.create(info.getMidPath(), info.getCommitId()));
+      }
+    } else {
+      for (Pair<String, Boolean> pathPair : info.getMoreSidedLeftPaths()) {
+        revisions.add(Pair.create(pathPair.first,
+            pathPair.second ? info.getCommitId() : info.getParent()));
+      }
+    }
+    return revisions;
+  }
+
+  /**
+   * Loads file contents in parallel on a small dedicated executor.
+   * Revisions that fail to load are left out of the result.
+   *
+   * @param revisions pairs of path and commit id
+   * @param project   the open project
+   * @return the contents by revision
+   */
+  private static Map<Pair<String, String>, String> loadContents(
+      List<Pair<String, String>> revisions, Project project) {
+    Map<Pair<String, String>, String> contents = new HashMap<>();
+    revisions.stream()
+        .map(revision -> CompletableFuture.supplyAsync(() -> {
+          FilePath path = new LocalFilePath(project.getBasePath() + "/" + revision.first, false);
+          try {
+            return Pair.create(revision, GitContentRevision
+                .createRevision(path, new GitRevisionNumber(revision.second), project)
+                .getContent());
+          } catch (VcsException e) {
+            e.printStackTrace();
+            return null;
+          }
+        }, contentLoader))
+        .collect(Collectors.toList())
+        .stream()
+        .map(CompletableFuture::join)
+        .filter(Objects::nonNull)
+        .forEachOrdered(loaded -> contents.put(loaded.first, loaded.second));
+    return contents;
+  }
+
   /**
    * Calculates the line of the package.
    *
@@ -290,6 +411,124 @@ public class Utils {
     return Integer.parseInt(output);
   }
 
+  /**
+   * Lists the last commits reachable from HEAD without loading their details.
+   * Only hashes and parents are read from the object database.
+   *
+   * @param repository GitRepository
+   * @param limit      maximum number of commits
+   * @return the commit hashes, newest first
+   * @throws Exception in case of a problem
+   */
+  public static List<String> getCommitHashes(GitRepository repository, int limit)
+      throws Exception {
+    List<String> hashes = new ArrayList<>();
+    Repository repo = new GitServiceImpl().openRepository(repository.getRoot().getPath());
+    try (RevWalk walk = new RevWalk(repo)) {
+      ObjectId head = repo.resolve(Constants.HEAD);
+      if (head == null) {
+        return hashes;
+      }
+      walk.setRetainBody(false);
+      walk.markStart(walk.parseCommit(head));
+      for (RevCommit commit : walk) {
+        if (hashes.size() >= limit) {
+          break;
+        }
+        hashes.add(commit.getName());
+      }
+    } finally {
+      repo.close();
+    }
+    return hashes;
+  }
+
+  /**
+   * Lists the commits of the first-parent chain that starts at a commit.
+   *
+   * @param repository GitRepository
+   * @param start      first commit of the chain
+   * @param limit      maximum number of commits
+   * @return the commit hashes, newest first
+   * @throws Exception in case of a problem
+   */
+  public static List<String> getFirstParentHashes(GitRepository repository, String start,
+                                                  int limit) throws Exception {
+    List<String> hashes = new ArrayList<>();
+    Repository repo = new GitServiceImpl().openRepository(repository.getRoot().getPath());
+    try (RevWalk walk = new RevWalk(repo)) {
+      walk.setRetainBody(false);
+      RevCommit commit = walk.parseCommit(ObjectId.fromString(start));
+      while (commit != null && hashes.size() < limit) {
+        hashes.add(commit.getName());
+        commit = commit.getParentCount() == 0 ? null : walk.parseCommit(commit.getParent(0));
+      }
+    } finally {
+      repo.close();
+    }
+    return hashes;
+  }
+
+  /**
+   * Lists the commits reachable from HEAD that touched a file, following its renames.
+   *
+   * @param repository GitRepository
+   * @param path       path of the file relative to the repository root
+   * @param limit      maximum number of commits
+   * @return the commit hashes, newest first
+   * @throws Exception in case of a problem
+   */
+  public static List<String> getFileHashes(GitRepository repository, String path, int limit)
+      throws Exception {
+    List<String> hashes = new ArrayList<>();
+    Repository repo = new GitServiceImpl().openRepository(repository.getRoot().getPath());
+    try (RevWalk walk = new RevWalk(repo)) {
+      ObjectId head = repo.resolve(Constants.HEAD);
+      if (head == null) {
+        return hashes;
+      }
+      walk.setRetainBody(false);
+      walk.setTreeFilter(FollowFilter.create(path, repo.getConfig().get(DiffConfig.KEY)));
+      walk.markStart(walk.parseCommit(head));
+      for (RevCommit commit : walk) {
+        if (hashes.size() >= limit) {
+          break;
+        }
+        hashes.add(commit.getName());
+      }
+    } finally {
+      repo.close();
+    }
+    return hashes;
+  }
+
+  /**
+   * Gets the authors of commits with one JGit walk.
+   * Commits that are not in the repository are left out.
+   *
+   * @param repository git repository
+   * @param commitIds  hashes of the commits
+   * @return the author name of each commit
+   */
+  public static Map<String, String> getAuthors(GitRepository repository,
+                                               Collection<String> commitIds) throws Exception {
+    Map<String, String> authors = new HashMap<>();
+    Repository repo = new GitServiceImpl().openRepository(repository.getRoot().getPath());
+    try (RevWalk walk = new RevWalk(repo)) {
+      for (String commitId : commitIds) {
+        try {
+          RevCommit commit = walk.parseCommit(ObjectId.fromString(commitId));
+          authors.put(commitId, commit.getAuthorIdent().getName());
+        } catch (IOException | IllegalArgumentException e) {
+          //not a commit of this repository
+        }
+      }
+    } finally {
+      repo.close();
+    }
+    return authors;
+  }
+
   /**
    * Calculates the version of the project by computing the hash code of the existing classes.
    *
@@ -0,0 +1,60 @@
+package org.jetbrains.research.refactorinsight.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+public class MethodHistoryTest {
+
+  @Test
+  public void ownerOfKeys() {
+    assertEquals("a.b.C", MethodHistory.ownerOf("a.b.C.m(int)"));
+    assertEquals("a.b.C", MethodHistory.ownerOf("a.b.C|field"));
+    assertEquals("a.b", MethodHistory.ownerOf("a.b.C"));
+    assertEquals("", MethodHistory.ownerOf("C"));
+  }
+
+  @Test
+  public void ownerOfKeysWithQualifiedParameters() {
+    assertEquals("a.b.C", MethodHistory.ownerOf("a.b.C.m(String...)"));
+    assertEquals("a.b.C", MethodHistory.ownerOf("a.b.C.m(java.util.Map.Entry, int)"));
+    assertEquals("a.Outer.Inner", MethodHistory.ownerOf("a.Outer.Inner.m(a.Outer.Inner)"));
+    assertEquals("a.Outer", MethodHistory.ownerOf("a.Outer.Inner"));
+    assertEquals("a.Outer.Inner", MethodHistory.ownerOf("a.Outer.Inner|field"));
+  }
+
+  @Test
+  public void membersWithQualifiedParametersAreFound() {
+    MethodHistory history = new MethodHistory();
+    history.put("a.C.m(String...)", new HashSet<>());
+    history.put("a.C.n(java.util.Map.Entry)", new HashSet<>());
+    history.put("a.C", new HashSet<>());
+
+    assertTrue(history.containsKey("a.C.n(java.util.Map.Entry)"));
+    assertEquals(Set.of("a.C.m(String...)", "a.C.n(java.util.Map.Entry)", "a.C"),
+        history.getClassHistory("a.C").keySet());
+  }
+
+  @Test
+  public void membersAreGroupedByOwner() {
+    MethodHistory history = new MethodHistory();
+    history.put("a.C.m()", new HashSet<>());
+    history.put("a.C|f", new HashSet<>());
+    history.put("a.D.m()", new HashSet<>());
+    history.put("a.C", new HashSet<>());
+
+    assertEquals(4, history.size());
+    assertEquals(Set.of("a.C.m()", "a.C|f"), history.getMembers("a.C"));
+    assertEquals(Set.of("a.C"), history.getMembers("a"));
+    assertTrue(history.containsKey("a.D.m()"));
+
+    history.remove("a.D.m()");
+    assertNull(history.get("a.D.m()"));
+    assertTrue(history.getMembers("a.D").isEmpty());
+    assertEquals(3, history.keySet().size());
+  }
+}
@@ -0,0 +1,192 @@
+package org.jetbrains.research.refactorinsight.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.intellij.openapi.util.Pair;
+import gr.uom.java.xmi.LocationInfo.CodeElementType;
+import gr.uom.java.xmi.diff.CodeRange;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.refactoringminer.api.RefactoringType;
+
+public class RefactoringEntryTest {
+
+  private static final int CLASSES = 100;
+  private static final int RELATED = 20;
+  private static final int UNRELATED = 5000 - 2 * CLASSES * (RELATED + 1);
+
+  /**
+   * Builds a package restructuring commit with 5000 refactorings:
+   * extract superclass with pull ups, extract class with moves and unrelated moves.
+   */
+  private static RefactoringEntry syntheticEntry() {
+    RefactoringEntry entry = new RefactoringEntry("b", "a", 0);
+    List<RefactoringInfo> infos = new ArrayList<>();
+    for (int i = 0; i < CLASSES; i++) {
+      infos.add(info(RefactoringType.EXTRACT_SUPERCLASS, "Sub" + i, "Super" + i, "super" + i));
+      for (int j = 0; j < RELATED; j++) {
+        infos.add(info(j % 2 == 0 ? RefactoringType.PULL_UP_OPERATION
+            : RefactoringType.PULL_UP_ATTRIBUTE, "Sub" + i, "Super" + i, "pullUp" + i + "_" + j));
+      }
+      infos.add(info(RefactoringType.EXTRACT_CLASS, "Source" + i, "Extracted" + i,
+          "extract" + i));
+      for (int j = 0; j < RELATED; j++) {
+        infos.add(info(j % 2 == 0 ? RefactoringType.MOVE_OPERATION
+            : RefactoringType.MOVE_ATTRIBUTE, "Source" + i, "Extracted" + i, "move" + i + "_" + j));
+      }
+    }
+    for (int i = 0; i < UNRELATED; i++) {
+      infos.add(info(RefactoringType.MOVE_OPERATION, "From" + i, "To" + i, "other" + i));
+    }
+    return entry.setRefactorings(infos);
+  }
+
+  /**
+   * Builds a commit of random extract superclass, extract class, pull up and move
+   * refactorings between a few classes, so that most of them are related to several others.
+   */
+  private static RefactoringEntry randomEntry(long seed, int size) {
+    Random random = new Random(seed);
+    RefactoringType[] types = {RefactoringType.EXTRACT_SUPERCLASS, RefactoringType.EXTRACT_CLASS,
+        RefactoringType.PULL_UP_OPERATION, RefactoringType.PULL_UP_ATTRIBUTE,
+        RefactoringType.MOVE_OPERATION, RefactoringType.MOVE_ATTRIBUTE};
+    List<RefactoringInfo> infos = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      RefactoringType type = types[random.nextInt(types.length)];
+      RefactoringInfo info = info(type, "C" + random.nextInt(40), "C" + random.nextInt(40),
+          "r" + i);
+      if (type == RefactoringType.PULL_UP_OPERATION) {
+        CodeRange range = new CodeRange(info.getLeftPath(), i, i, 0, 0,
+            CodeElementType.METHOD_DECLARATION);
+        info.addMarking(range, range, false);
+      }
+      infos.add(info);
+    }
+    return new RefactoringEntry("b", "a", 0).setRefactorings(infos);
+  }
+
+  /**
+   * The nested scans combineRelated used before it indexed the refactorings.
+   */
+  private static void combineRelatedByScanning(RefactoringEntry entry) {
+    List<RefactoringInfo> refactorings = entry.getRefactorings();
+    for (RefactoringInfo info : refactorings) {
+      if (info.getType() != RefactoringType.EXTRACT_SUPERCLASS) {
+        continue;
+      }
+      for (RefactoringInfo pullUp : refactorings) {
+        if ((pullUp.getType() == RefactoringType.PULL_UP_ATTRIBUTE
+            || pullUp.getType() == RefactoringType.PULL_UP_OPERATION)
+            && pullUp.getRightPath().equals(info.getRightPath())) {
+          pullUp.setHidden(true);
+          pullUp.getLineMarkings().forEach(line -> {
+            line.setMoreSided(true);
+            info.getLineMarkings().add(0, line);
+            info.getMoreSidedLeftPaths().add(0, new Pair<>(pullUp.getLeftPath(), false));
+          });
+        }
+      }
+    }
+    for (RefactoringInfo info : refactorings) {
+      if (info.getType() != RefactoringType.EXTRACT_CLASS) {
+        continue;
+      }
+      String extracted = info.getMidPath() == null ? info.getRightPath() : info.getMidPath();
+      for (RefactoringInfo move : refactorings) {
+        if ((move.getType() == RefactoringType.MOVE_OPERATION
+            || move.getType() == RefactoringType.MOVE_ATTRIBUTE)
+            && move.getRightPath().equals(extracted)
+            && move.getLeftPath().equals(info.getLeftPath())) {
+          info.addIncludedRefactoring(move.getName());
+          move.setHidden(true);
+        }
+      }
+    }
+  }
+
+  private static RefactoringInfo info(RefactoringType type, String left, String right,
+                                      String name) {
+    return new RefactoringInfo()
+        .setType(type)
+        .setName(name)
+        .setLeftPath(left + ".java")
+        .setRightPath(right + ".java");
+  }
+
+  @Test
+  public void combineRelatedGroupsSyntheticCommit() {
+    RefactoringEntry entry = syntheticEntry();
+    assertEquals(5000, entry.getRefactorings().size());
+
+    entry.combineRelated();
+
+    List<RefactoringInfo> hidden = entry.getRefactorings().stream()
+        .filter(RefactoringInfo::isHidden)
+        .collect(Collectors.toList());
+    assertEquals(2 * CLASSES * RELATED, hidden.size());
+    assertTrue(hidden.stream().allMatch(info -> info.getName().startsWith("pullUp")
+        || info.getName().startsWith("move")));
+
+    for (RefactoringInfo info : entry.getRefactorings()) {
+      if (info.getType() == RefactoringType.EXTRACT_CLASS) {
+        String index = info.getName().substring("extract".length());
+        Set<String> includes = info.getIncludingRefactorings();
+        assertEquals(RELATED, includes.size());
+        assertTrue(includes.stream().allMatch(name -> name.startsWith("move" + index + "_")));
+      } else if (info.getName().startsWith("other")) {
+        assertFalse(info.isHidden());
+      }
+    }
+  }
+
+  @Test
+  public void combineRelatedMatchesScanning() {
+    RefactoringEntry indexed = randomEntry(42, 5000);
+    RefactoringEntry scanned = randomEntry(42, 5000);
+
+    indexed.combineRelated();
+    combineRelatedByScanning(scanned);
+
+    for (int i = 0; i < indexed.getRefactorings().size(); i++) {
+      RefactoringInfo expected = scanned.getRefactorings().get(i);
+      RefactoringInfo actual = indexed.getRefactorings().get(i);
+      assertEquals(expected.getName(), actual.getName());
+      assertEquals(expected.isHidden(), actual.isHidden());
+      assertEquals(expected.getIncludingRefactorings(), actual.getIncludingRefactorings());
+      assertEquals(expected.getMoreSidedLeftPaths(), actual.getMoreSidedLeftPaths());
+      assertEquals(expected.getLineMarkings().size(), actual.getLineMarkings().size());
+    }
+  }
+
+  /**
+   * Times the indexed combineRelated against the nested scans on the synthetic
+   * 5000 refactoring commit. Run it by hand, it prints the best time of each.
+   */
+  @Ignore("benchmark")
+  @Test
+  public void benchmarkCombineRelated() {
+    long indexed = bestTime(RefactoringEntry::combineRelated);
+    long scanned = bestTime(RefactoringEntryTest::combineRelatedByScanning);
+    System.out.printf("combineRelated on 5000 refactorings: indexed %d us, scanning %d us%n",
+        indexed / 1000, scanned / 1000);
+  }
+
+  private static long bestTime(Consumer<RefactoringEntry> combine) {
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < 20; round++) {
+      RefactoringEntry entry = syntheticEntry();
+      long start = System.nanoTime();
+      combine.accept(entry);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+}
@@ -0,0 +1,55 @@
+package org.jetbrains.research.refactorinsight.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.junit.Test;
+
+public class MiningScopeTest {
+
+  @Test
+  public void emptyScopeContainsJavaFiles() {
+    MiningScope scope = new MiningScope("", null);
+
+    assertTrue(scope.isEmpty());
+    assertTrue(scope.contains("src/a/A.java"));
+    assertFalse(scope.contains("src/a/a.kt"));
+  }
+
+  @Test
+  public void includesAndExcludes() {
+    MiningScope scope = new MiningScope("src/**, lib/*.java", "**/test/**\n**/Gen*.java");
+
+    assertFalse(scope.isEmpty());
+    assertTrue(scope.contains("src/a/A.java"));
+    assertTrue(scope.contains("lib/B.java"));
+    assertFalse(scope.contains("lib/c/C.java"));
+    assertFalse(scope.contains("src/test/a/ATest.java"));
+    assertFalse(scope.contains("src/a/GenA.java"));
+    assertFalse(scope.contains("other/A.java"));
+  }
+
+  @Test
+  public void fingerprintFollowsGlobs() {
+    assertEquals(new MiningScope("src/**", "").getFingerprint(),
+        new MiningScope("src/**", "").getFingerprint());
+    assertNotEquals(new MiningScope("src/**", "").getFingerprint(),
+        new MiningScope("src/**", "**/test/**").getFingerprint());
+  }
+
+  @Test
+  public void keyOnlyDependsOnMinedFiles() {
+    MiningScope all = new MiningScope("", "");
+    MiningScope src = new MiningScope("src/**", "");
+    List<String> changed = List.of("src/B.java", "src/A.java", "README.md");
+
+    assertEquals(all.key(changed), src.key(changed));
+    assertEquals(src.key(changed), src.key(List.of("src/A.java", "src/B.java", "src/A.java")));
+    assertNotEquals(src.key(changed), src.key(List.of("src/A.java", "test/T.java")));
+    assertNotEquals(all.key(List.of("src/A.java", "test/T.java")),
+        src.key(List.of("src/A.java", "test/T.java")));
+  }
+}
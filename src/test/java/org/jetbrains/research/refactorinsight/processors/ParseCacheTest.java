@@ -0,0 +1,79 @@
+package org.jetbrains.research.refactorinsight.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import gr.uom.java.xmi.UMLClass;
+import gr.uom.java.xmi.UMLModel;
+import gr.uom.java.xmi.UMLModelASTReader;
+import gr.uom.java.xmi.UMLOperation;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParseCacheTest {
+
+  private static final String PATH = "src/p/B.java";
+  private static final String CONTENT = "package p;\n"
+      + "public class B extends A implements Runnable {\n"
+      + "  private int count;\n"
+      + "  public void run() { count++; }\n"
+      + "  int get(String name, int... values) { return count; }\n"
+      + "}\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void modelRoundTrip() throws Exception {
+    Set<String> directories = Collections.singleton("src/p");
+    UMLModel model = new UMLModelASTReader(
+        Collections.singletonMap(PATH, CONTENT), directories).getUmlModel();
+    ParseCache cache = new ParseCache(folder.newFolder(), 1024 * 1024);
+    String blobId = SnapshotMiner.blobId(CONTENT);
+    cache.put(blobId, PATH, model);
+
+    UMLModel cached = cache.get(blobId, PATH, directories);
+    assertNotNull(cached);
+    assertEquals(1, cached.getClassList().size());
+    UMLClass expected = model.getClassList().get(0);
+    UMLClass actual = cached.getClassList().get(0);
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getSourceFile(), actual.getSourceFile());
+    assertEquals(expected.getAttributes().size(), actual.getAttributes().size());
+    assertEquals(names(expected), names(actual));
+    assertEquals(1, cached.getGeneralizationList().size());
+    assertEquals(1, cached.getRealizationList().size());
+  }
+
+  @Test
+  public void sameBlobAtOtherPath() throws Exception {
+    Set<String> directories = Collections.singleton("src/p");
+    UMLModel model = new UMLModelASTReader(
+        Collections.singletonMap(PATH, CONTENT), directories).getUmlModel();
+    ParseCache cache = new ParseCache(folder.newFolder(), 1024 * 1024);
+    String blobId = SnapshotMiner.blobId(CONTENT);
+    cache.put(blobId, PATH, model);
+
+    assertNull(cache.get(blobId, "other/p/B.java", directories));
+    assertNotNull(cache.get(blobId, PATH, directories));
+  }
+
+  @Test
+  public void disabledCache() throws Exception {
+    ParseCache cache = new ParseCache(folder.newFolder(), 0);
+    cache.put(SnapshotMiner.blobId(CONTENT), PATH, new UMLModel(Collections.emptySet()));
+
+    assertNull(cache.get(SnapshotMiner.blobId(CONTENT), PATH, Collections.emptySet()));
+  }
+
+  private static Set<String> names(UMLClass umlClass) {
+    return umlClass.getOperations().stream()
+        .map(UMLOperation::toString)
+        .collect(Collectors.toSet());
+  }
+}
@@ -27,7 +27,7 @@ public class ConverterTest {
     //Test case 2
     String oneEntryString = "1.0.5" + delimiter(MAP) + "cccc"
         + delimiter(MAP_ENTRY) + "bbbb"
-        + delimiter(ENTRY) + 1234 + delimiter(ENTRY);
+        + delimiter(ENTRY) + 1234 + delimiter(ENTRY) + delimiter(ENTRY);
     RefactoringsMap oneEntryMap =
         new RefactoringsMap(new ConcurrentHashMap<>(Map.of("cccc",
             new RefactoringEntry("cccc", "bbbb", 1234)
@@ -35,11 +35,18 @@ public class ConverterTest {
     //Test case 3
     String moreEntryString = oneEntryString
         + delimiter(MAP) + "bbbb" + delimiter(MAP_ENTRY) + "aaaa"
-        + delimiter(ENTRY) + 5678 + delimiter(ENTRY);
+        + delimiter(ENTRY) + 5678 + delimiter(ENTRY) + "a1b2" + delimiter(ENTRY)
+        + delimiter(MAP) + "dddd" + delimiter(MAP_ENTRY) + "cccc"
+        + delimiter(ENTRY) + 9012 + delimiter(ENTRY) + "c3d4:9e8f" + delimiter(ENTRY);
     RefactoringsMap moreEntryMap = new RefactoringsMap(new ConcurrentHashMap<>(Map.of(
         "cccc", new RefactoringEntry("cccc", "bbbb", 1234)
             .setRefactorings(new ArrayList<>()),
         "bbbb", new RefactoringEntry("bbbb", "aaaa", 5678)
+            .setScope("a1b2")
+            .setRefactorings(new ArrayList<>()),
+        "dddd", new RefactoringEntry("dddd", "cccc", 9012)
+            .setScope("c3d4")
+            .setScopeFingerprint("9e8f")
             .setRefactorings(new ArrayList<>()))
     ), "1.0.5");
     RefactoringsMapConverter converter = new RefactoringsMapConverter();
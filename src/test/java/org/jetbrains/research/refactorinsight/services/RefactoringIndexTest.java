@@ -0,0 +1,114 @@
+package org.jetbrains.research.refactorinsight.services;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.research.refactorinsight.data.Group;
+import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
+import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
+import org.refactoringminer.api.RefactoringType;
+
+public class RefactoringIndexTest extends BasePlatformTestCase {
+
+  private MiningService miner;
+  private RefactoringIndex index;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    miner = MiningService.getInstance(getProject());
+    index = RefactoringIndex.getInstance(getProject());
+    miner.clear();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    try {
+      miner.clear();
+    } finally {
+      super.tearDown();
+    }
+  }
+
+  private static RefactoringEntry entry(String commitId, String scope,
+                                        RefactoringInfo... infos) {
+    return new RefactoringEntry(commitId, "parent", 1000)
+        .setScope(scope)
+        .setRefactorings(List.of(infos));
+  }
+
+  private static RefactoringInfo renameMethod(String before, String after) {
+    return new RefactoringInfo()
+        .setType(RefactoringType.RENAME_METHOD)
+        .setGroup(Group.METHOD)
+        .setNameBefore(before)
+        .setNameAfter(after)
+        .setLeftPath("src/a/C.java")
+        .setRightPath("src/a/C.java");
+  }
+
+  private static RefactoringInfo renameClass(String before, String after) {
+    return new RefactoringInfo()
+        .setType(RefactoringType.RENAME_CLASS)
+        .setGroup(Group.CLASS)
+        .setNameBefore(before)
+        .setNameAfter(after)
+        .setLeftPath("src/a/" + before.substring(before.lastIndexOf('.') + 1) + ".java")
+        .setRightPath("src/a/" + after.substring(after.lastIndexOf('.') + 1) + ".java");
+  }
+
+  private void store(RefactoringEntry entry) {
+    miner.getState().refactoringsMap.map.put(entry.getCommitId(), entry);
+    getProject().getMessageBus().syncPublisher(RefactoringsListener.TOPIC).entryStored(entry);
+  }
+
+  public void testStoredEntriesAreIndexed() {
+    store(entry("c1", "k1", renameMethod("a.C.m(String...)", "a.C.n(String...)"),
+        renameClass("a.D", "a.E")));
+
+    assertEquals(Set.of("c1"), index.getCommits("a.C.m(String...)"));
+    assertEquals(Map.of("c1", List.of(0)), index.getPositions("a.C"));
+    assertEquals(Map.of("c1", List.of(0)), index.getPositions("src/a/C.java"));
+    assertEquals(Map.of("c1", List.of(1)), index.getPositions("a.E"));
+    assertTrue(index.getCommits("a.F").isEmpty());
+    assertEquals(1, index.getRefactorings("a.D").size());
+  }
+
+  public void testStoringAgainReplacesPostings() {
+    store(entry("c1", "k1", renameMethod("a.C.m()", "a.C.n()")));
+    store(entry("c1", "k2", renameMethod("a.C.p()", "a.C.q()")));
+
+    assertTrue(index.getCommits("a.C.m()").isEmpty());
+    assertEquals(Set.of("c1"), index.getCommits("a.C.q()"));
+  }
+
+  public void testResyncIndexesReplacedEntries() {
+    store(entry("c1", "k1", renameMethod("a.C.m()", "a.C.n()")));
+    //replaced without being published, as when another state is loaded
+    miner.getState().refactoringsMap.map.put("c1",
+        entry("c1", "k2", renameMethod("a.C.p()", "a.C.q()"), renameClass("a.C", "a.D")));
+    miner.getState().refactoringsMap.map.put("c2",
+        entry("c2", "k1", renameClass("a.X", "a.Y")));
+    index.resync();
+
+    assertTrue(index.getCommits("a.C.m()").isEmpty());
+    assertEquals(Set.of("c1"), index.getCommits("a.C.q()"));
+    assertEquals(Set.of("c2"), index.getCommits("a.Y"));
+
+    miner.getState().refactoringsMap.map.remove("c2");
+    index.resync();
+    assertTrue(index.getCommits("a.Y").isEmpty());
+  }
+
+  public void testRebuiltFromStore() {
+    store(entry("c1", "k1", renameMethod("a.C.m()", "a.C.n()")));
+    miner.getState().refactoringsMap.map.put("c2", entry("c2", "k1", renameClass("a.X", "a.Y")));
+    //the index is not persisted, so it starts empty next to a loaded store
+    index.clear();
+    index.resync();
+
+    assertEquals(Set.of("c1"), index.getCommits("a.C.n()"));
+    assertEquals(Map.of("c2", List.of(0)), index.getPositions("a.Y"));
+  }
+}
@@ -0,0 +1,121 @@
+package org.jetbrains.research.refactorinsight.services;
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jetbrains.research.refactorinsight.data.Group;
+import org.jetbrains.research.refactorinsight.data.RefactoringEntry;
+import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
+import org.refactoringminer.api.RefactoringType;
+
+public class SearchIndexTest extends BasePlatformTestCase {
+
+  private MiningService miner;
+  private SearchIndex search;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    miner = MiningService.getInstance(getProject());
+    search = SearchIndex.getInstance(getProject());
+    miner.clear();
+    store("c1", 1000, info(RefactoringType.RENAME_METHOD, Group.METHOD,
+        "a.Parser.parse()", "a.Parser.read()", "src/a/Parser.java"),
+        info(RefactoringType.RENAME_CLASS, Group.CLASS, "a.Lexer", "a.Scanner",
+            "src/a/Scanner.java"));
+    store("c2", 2000, info(RefactoringType.RENAME_ATTRIBUTE, Group.ATTRIBUTE,
+        "count", "size", "src/b/Buffer.java"),
+        info(RefactoringType.MOVE_OPERATION, Group.METHOD, "b.Buffer.parse()",
+            "c.Reader.parse()", "src/c/Reader.java").setHidden(true));
+    store("c3", 3000, info(RefactoringType.RENAME_METHOD, Group.METHOD,
+        "c.Reader.next()", "c.Reader.advance()", "src/c/Reader.java"));
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    try {
+      miner.clear();
+    } finally {
+      super.tearDown();
+    }
+  }
+
+  private static RefactoringInfo info(RefactoringType type, Group group, String before,
+                                      String after, String path) {
+    return new RefactoringInfo()
+        .setType(type)
+        .setGroup(group)
+        .setNameBefore(before)
+        .setNameAfter(after)
+        .setDetailsBefore("b.Buffer")
+        .setDetailsAfter("b.Buffer")
+        .setLeftPath(path)
+        .setRightPath(path);
+  }
+
+  private void store(String commitId, long time, RefactoringInfo... infos) {
+    RefactoringEntry entry = new RefactoringEntry(commitId, "parent", time)
+        .setScope("k")
+        .setRefactorings(List.of(infos));
+    miner.getState().refactoringsMap.map.put(commitId, entry);
+    getProject().getMessageBus().syncPublisher(RefactoringsListener.TOPIC).entryStored(entry);
+  }
+
+  private List<String> search(String text, RefactoringType type, Group group,
+                              long from, long to, int limit) {
+    return search.search(new SearchIndex.Query(text, type, group, null, from, to), limit)
+        .getMatches().stream()
+        .map(match -> match.getCommitId() + "#" + match.getPosition())
+        .collect(Collectors.toList());
+  }
+
+  public void testEmptyQueryFindsVisibleRefactoringsNewestFirst() {
+    assertEquals(List.of("c3#0", "c2#0", "c1#0", "c1#1"),
+        search("", null, null, 0, Long.MAX_VALUE, 10));
+  }
+
+  public void testTextMatchesPathsAndNames() {
+    assertEquals(List.of("c1#0"), search("PARSER", null, null, 0, Long.MAX_VALUE, 10));
+    assertEquals(List.of("c1#1"), search("lexer", null, null, 0, Long.MAX_VALUE, 10));
+    assertEquals(List.of("c2#0"), search("size", null, null, 0, Long.MAX_VALUE, 10));
+    assertEquals(List.of("c3#0"), search("src/c/", null, null, 0, Long.MAX_VALUE, 10));
+  }
+
+  public void testTypeGroupAndTimeFilters() {
+    assertEquals(List.of("c3#0", "c1#0"),
+        search(null, RefactoringType.RENAME_METHOD, null, 0, Long.MAX_VALUE, 10));
+    assertEquals(List.of("c2#0"), search(null, null, Group.ATTRIBUTE, 0, Long.MAX_VALUE, 10));
+    assertEquals(List.of("c2#0"), search(null, null, null, 1500, 2500, 10));
+  }
+
+  public void testLimitKeepsTotal() {
+    SearchIndex.Result result = search.search(
+        new SearchIndex.Query(null, null, null, null, 0, Long.MAX_VALUE), 2);
+
+    assertEquals(4, result.getTotal());
+    assertEquals(List.of("c3", "c2"), result.getMatches().stream()
+        .map(SearchIndex.Match::getCommitId).collect(Collectors.toList()));
+  }
+
+  public void testStoringAgainReplacesMatches() {
+    store("c3", 3000, info(RefactoringType.RENAME_CLASS, Group.CLASS, "c.Reader", "c.Source",
+        "src/c/Source.java"));
+
+    assertTrue(search("next", null, null, 0, Long.MAX_VALUE, 10).isEmpty());
+    assertEquals(List.of("c3#0"), search("source", null, null, 0, Long.MAX_VALUE, 10));
+  }
+
+  public void testStoringOftenCompactsRows() {
+    //builds the rows, so the entries below are appended to them
+    search(null, null, null, 0, Long.MAX_VALUE, 10);
+    for (int i = 0; i < 3000; i++) {
+      store("c3", 3000, info(RefactoringType.RENAME_METHOD, Group.METHOD,
+          "c.Reader.next()", "c.Reader.step" + i + "()", "src/c/Reader.java"));
+    }
+
+    assertEquals(List.of("c3#0"), search("step2999", null, null, 0, Long.MAX_VALUE, 10));
+    assertTrue(search("step1500", null, null, 0, Long.MAX_VALUE, 10).isEmpty());
+    assertEquals(List.of("c3#0", "c2#0", "c1#0", "c1#1"),
+        search("", null, null, 0, Long.MAX_VALUE, 10));
+  }
+}
@@ -9,6 +9,11 @@ import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiParameter;
 import com.intellij.psi.PsiParameterList;
 import com.intellij.psi.PsiType;
+import gr.uom.java.xmi.LocationInfo.CodeElementType;
+import gr.uom.java.xmi.diff.CodeRange;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.research.refactorinsight.data.RefactoringInfo;
 import org.junit.Test;
 
 public class UtilsTest {
@@ -65,4 +70,22 @@ public class UtilsTest {
     assertEquals(sanitized, StringUtils.sanitize(unSanitized));
     assertEquals(unSanitized, StringUtils.deSanitize(sanitized));
   }
+
+  @Test
+  public void sharingMarkingsGroupsRelatedRefactorings() {
+    List<RefactoringInfo> infos = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      CodeRange range = new CodeRange("C" + i + ".java", i, i, 0, 0,
+          CodeElementType.METHOD_DECLARATION);
+      infos.add(new RefactoringInfo().setName("r" + i).addMarking(range, range, false));
+    }
+    //the second and the last refactoring share the marking of the first one
+    infos.get(3).getLineMarkings().add(infos.get(0).getLineMarkings().get(0));
+    infos.get(1).getLineMarkings().add(infos.get(3).getLineMarkings().get(0));
+
+    List<List<RefactoringInfo>> groups = new ArrayList<>(Utils.sharingMarkings(infos));
+    assertEquals(2, groups.size());
+    assertEquals(List.of(infos.get(0), infos.get(1), infos.get(3)), groups.get(0));
+    assertEquals(List.of(infos.get(2)), groups.get(1));
+  }
 }